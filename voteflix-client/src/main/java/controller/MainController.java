@@ -13,8 +13,11 @@ import network.ServerConnection;
 import session.SessionManager;
 // Não há mais TokenDecoder nem lógica de Role
 
+import org.json.JSONObject;
+
 import java.io.IOException;
 import java.util.Objects;
+import java.util.function.Consumer;
 
 public class MainController {
 
@@ -23,6 +26,13 @@ public class MainController {
     @FXML private Tab moviesTab;
     @FXML private Tab myReviewsTab;
     @FXML private Tab userManagementTab;
+    private MoviesController movieController;
+    // Avisos do servidor para todos os usuários (ex.: desligamento)
+    private final Consumer<JSONObject> noticeListener = event -> {
+        if ("AVISO".equals(event.optString("evento"))) {
+            Platform.runLater(() -> showNotice(event.optString("mensagem")));
+        }
+    };
 
     @FXML
     private void initialize() {
@@ -38,7 +48,7 @@ public class MainController {
 
             // Carrega Aba Filmes (usando os arquivos unificados)
             moviesTab.setText("Filmes");
-            MoviesController movieController = (MoviesController) getControllerForTab(moviesTab, "/view/MoviesView.fxml");
+            movieController = (MoviesController) getControllerForTab(moviesTab, "/view/MoviesView.fxml");
             moviesTab.setOnSelectionChanged(event -> {
                 if (moviesTab.isSelected() && movieController != null) movieController.loadMovies();
             });
@@ -58,6 +68,7 @@ public class MainController {
             // Nenhuma aba é removida.
 
             mainTabPane.getSelectionModel().select(profileTab);
+            ServerConnection.getInstance().addEventListener(noticeListener);
 
         } catch (IOException | NullPointerException e) {
             System.err.println("Erro Crítico ao carregar FXML: " + e.getMessage());
@@ -79,6 +90,10 @@ public class MainController {
             new Thread(() -> ServerConnection.getInstance().logout(token)).start();
         }
         SessionManager.getInstance().clearSession();
+        if (movieController != null) {
+            movieController.stopLiveUpdates();
+        }
+        ServerConnection.getInstance().removeEventListener(noticeListener);
 
         try {
             Stage currentStage = (Stage) mainTabPane.getScene().getWindow();
@@ -98,6 +113,16 @@ public class MainController {
         }
     }
 
+    private void showNotice(String message) {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Aviso do Servidor");
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.getDialogPane().getStylesheets().add(Objects.requireNonNull(getClass().getResource("/view/style.css")).toExternalForm());
+        alert.getDialogPane().getStyleClass().add("root");
+        alert.show();
+    }
+
     private void showCriticalLoadError() {
         Alert alert = new Alert(Alert.AlertType.ERROR);
         alert.setTitle("Erro Crítico");
@@ -27,6 +27,7 @@ import session.SessionManager;
 import java.io.IOException;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public class MovieDetailController {
 
@@ -44,6 +45,11 @@ public class MovieDetailController {
     private final ObservableList<Review> currentReviews = FXCollections.observableArrayList();
     private Review userExistingReview = null;
 
+    // Atualizações ao vivo: inscrito no filme enquanto a janela está aberta (ver stopLiveUpdates)
+    private final Consumer<JSONObject> eventListener = this::onServerEvent;
+    private volatile int liveMovieId = -1;
+    private long lastAppliedVersion;
+
     @FXML
     private void initialize() {
         synopsisText.getStyleClass().add("synopsis-text");
@@ -87,11 +93,105 @@ public class MovieDetailController {
                 reviewsListView.setPlaceholder(new Label("Ainda não há avaliações para este filme."));
             }
 
+            if (liveMovieId < 0) {
+                liveMovieId = movie.getId();
+                ServerConnection.getInstance().addEventListener(eventListener);
+                ServerConnection.getInstance().subscribe(SessionManager.getInstance().getToken(), String.valueOf(movie.getId()));
+            }
+
         } else {
             reviewsListView.setPlaceholder(new Label("Não foi possível carregar os detalhes do filme."));
         }
     }
 
+    // Chamado por quem abriu a janela, depois que ela fecha
+    public void stopLiveUpdates() {
+        if (liveMovieId < 0) return;
+        ServerConnection.getInstance().removeEventListener(eventListener);
+        ServerConnection.getInstance().unsubscribe(SessionManager.getInstance().getToken(), String.valueOf(liveMovieId));
+        liveMovieId = -1;
+    }
+
+    // Thread leitora da conexão: filtra pelo filme (eventos sem filme, como RESINCRONIZAR, valem para
+    // todos) e aplica na thread da interface
+    private void onServerEvent(JSONObject event) {
+        JSONObject movie = event.optJSONObject("filme");
+        String movieId = movie != null ? movie.optString("id") : event.optString("id_filme");
+        if (movieId.isEmpty() || String.valueOf(liveMovieId).equals(movieId)) {
+            Platform.runLater(() -> applyServerEvent(event));
+        }
+    }
+
+    private void applyServerEvent(JSONObject event) {
+        if (currentMovie == null) return;
+        // Eventos de nota e do filme trazem a versão; um atrasado (menor que a última aplicada) é ignorado
+        long version = event.optLong("versao", -1);
+        if (version >= 0) {
+            if (version < lastAppliedVersion) return;
+            lastAppliedVersion = version;
+        }
+        switch (event.getString("evento")) {
+            case "REVIEW_CRIADA", "REVIEW_EDITADA" -> {
+                Review review = parseReviewFromJson(event.getJSONObject("review"));
+                int index = indexOfReview(review.getId());
+                if (index >= 0) {
+                    // Quem é o dono não muda numa edição
+                    review.setOwnReview(currentReviews.get(index).isOwnReview());
+                    currentReviews.set(index, review);
+                } else {
+                    currentReviews.add(review);
+                }
+                if (review.isOwnReview()) {
+                    userExistingReview = review;
+                }
+            }
+            case "REVIEW_EXCLUIDA" -> {
+                int index = indexOfReview(event.optInt("id_review", 0));
+                if (index >= 0) {
+                    Review removed = currentReviews.remove(index);
+                    if (removed == userExistingReview) {
+                        userExistingReview = null;
+                        addEditReviewButton.setText("Adicionar Avaliação");
+                    }
+                }
+                if (currentReviews.isEmpty()) {
+                    reviewsListView.setPlaceholder(new Label("Ainda não há avaliações para este filme."));
+                }
+            }
+            case "NOTA_ALTERADA" -> {
+                currentMovie.setNota(Double.parseDouble(event.getString("nota").replace(",", ".")));
+                currentMovie.setQtdAvaliacoes(Integer.parseInt(event.getString("qtd_avaliacoes")));
+                updateRatingLabel(currentMovie.getNota(), currentMovie.getQtdAvaliacoes());
+            }
+            case "FILME_EDITADO" -> {
+                Movie movie = Movie.fromJson(event.getJSONObject("filme"));
+                currentMovie = movie;
+                titleLabel.setText(movie.getTitulo());
+                directorAndYearLabel.setText(String.format("%s (%s)", movie.getDiretor(), movie.getAno()));
+                genresLabel.setText("Gêneros: " + movie.getGenerosString());
+                updateRatingLabel(movie.getNota(), movie.getQtdAvaliacoes());
+                synopsisText.setText(movie.getSinopse());
+            }
+            case "FILME_EXCLUIDO" -> {
+                statusLabel.setText("Este filme foi excluído.");
+                addEditReviewButton.setDisable(true);
+            }
+            // O servidor descartou eventos que não conseguiu entregar a tempo: busca a página inteira
+            case "RESINCRONIZAR" -> refreshReviews();
+            default -> {
+            }
+        }
+    }
+
+    private int indexOfReview(int reviewId) {
+        for (int i = 0; i < currentReviews.size(); i++) {
+            if (currentReviews.get(i).getId() == reviewId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     private void updateRatingLabel(double nota, int qtdAvaliacoes) {
         ratingLabel.setText(String.format("Nota: %.1f/5.0 (%d avaliações)", nota, qtdAvaliacoes));
     }
@@ -240,7 +340,10 @@ public class MovieDetailController {
                     if ("200".equals(status)) {
                         // --- CORREÇÃO AQUI ---
                         showAlert(Alert.AlertType.INFORMATION, "Sucesso", response.getString("mensagem"));
-                        refreshReviews();
+                        // Inscrito, a exclusão já chegou como evento antes desta resposta
+                        if (liveMovieId < 0) {
+                            refreshReviews();
+                        }
                     } else {
                         String finalMessage = response.optString("mensagem", "Erro ao excluir avaliação.");
                         showErrorAlert(finalMessage);
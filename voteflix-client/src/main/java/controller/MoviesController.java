@@ -21,10 +21,12 @@ import session.SessionManager;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 public class MoviesController {
 
@@ -39,6 +41,7 @@ public class MoviesController {
 
     @FXML private TextField searchIdField;
     @FXML private ComboBox<String> genreFilterComboBox;
+    @FXML private ComboBox<String> sortComboBox;
 
     @FXML private Button editButton;
     @FXML private Button deleteButton;
@@ -48,16 +51,32 @@ public class MoviesController {
     @FXML private Button nextPageButton;
     @FXML private Label pageLabel;
 
-    // Lista que armazena TODOS os filmes vindos do servidor
-    private final List<Movie> allMoviesMasterList = new ArrayList<>();
-
-    // Lista exibida na tabela (filtrada e paginada)
+    // Lista exibida na tabela (a página atual, já filtrada pelo servidor)
     private final ObservableList<Movie> displayedMovies = FXCollections.observableArrayList();
 
-    // Configurações de Paginação
+    // Configurações de Paginação (feita no servidor)
     private static final int ITEMS_PER_PAGE = 5; // Pode alterar para 10 se preferir
+    private static final int SEARCH_RESULTS_LIMIT = 20;
     private int currentPage = 1;
     private int totalPages = 1;
+    // pageCursors.get(i) é o cursor que busca a página i + 1 (null para a primeira);
+    // o servidor só anda para frente, então os cursores já vistos permitem voltar
+    private final List<String> pageCursors = new ArrayList<>();
+    private String nextCursor;
+
+    // Inscrito no catálogo: nota e edições atualizam a linha, filmes novos e excluídos recarregam a página
+    private final Consumer<JSONObject> eventListener = this::onServerEvent;
+    private boolean liveUpdates;
+
+    // Opções exibidas -> valor de "ordenar_por" enviado ao servidor
+    private static final Map<String, String> SORT_OPTIONS = new LinkedHashMap<>();
+    static {
+        SORT_OPTIONS.put("Cadastro", "id");
+        SORT_OPTIONS.put("Maior nota", "nota");
+        SORT_OPTIONS.put("Mais avaliados", "avaliacoes");
+        SORT_OPTIONS.put("Mais recentes", "ano");
+        SORT_OPTIONS.put("Título (A-Z)", "titulo");
+    }
 
     @FXML
     private void initialize() {
@@ -81,8 +100,15 @@ public class MoviesController {
             deleteButton.setDisable(!isItemSelected);
         });
 
-        // Configurar Filtro de Gêneros
+        // Configurar Filtro de Gêneros e Ordenação
         setupGenreFilter();
+        setupSortOptions();
+    }
+
+    private void setupSortOptions() {
+        sortComboBox.setItems(FXCollections.observableArrayList(SORT_OPTIONS.keySet()));
+        sortComboBox.getSelectionModel().selectFirst();
+        sortComboBox.setOnAction(event -> loadMovies());
     }
 
     private void setupGenreFilter() {
@@ -95,25 +121,84 @@ public class MoviesController {
         genreFilterComboBox.getSelectionModel().selectFirst(); // Seleciona "Todos"
 
         // Quando o usuário mudar o gênero, volta para página 1 e atualiza
-        genreFilterComboBox.setOnAction(event -> {
-            currentPage = 1;
-            updateTableData();
-        });
+        genreFilterComboBox.setOnAction(event -> loadMovies());
     }
 
+    // Recarrega a partir da primeira página (filtro novo, filme criado/editado/excluído)
     public void loadMovies() {
+        startLiveUpdates();
+        pageCursors.clear();
+        pageCursors.add(null);
+        loadPage(1);
+    }
+
+    // A inscrição é por conexão; o ServerConnection não repete a requisição se já estiver inscrito
+    private void startLiveUpdates() {
+        if (!liveUpdates) {
+            liveUpdates = true;
+            ServerConnection.getInstance().addEventListener(eventListener);
+        }
+        ServerConnection.getInstance().subscribe(SessionManager.getInstance().getToken(), null);
+    }
+
+    // No logout; a inscrição em si termina junto com a conexão
+    public void stopLiveUpdates() {
+        liveUpdates = false;
+        ServerConnection.getInstance().removeEventListener(eventListener);
+    }
+
+    private void onServerEvent(JSONObject event) {
+        Platform.runLater(() -> {
+            switch (event.getString("evento")) {
+                case "NOTA_ALTERADA" -> {
+                    Movie movie = findDisplayedMovie(event.getString("id_filme"));
+                    if (movie != null) {
+                        movie.setNota(Double.parseDouble(event.getString("nota").replace(",", ".")));
+                        movie.setQtdAvaliacoes(Integer.parseInt(event.getString("qtd_avaliacoes")));
+                        moviesTable.refresh();
+                    }
+                }
+                case "FILME_EDITADO" -> {
+                    Movie updated = Movie.fromJson(event.getJSONObject("filme"));
+                    Movie movie = findDisplayedMovie(String.valueOf(updated.getId()));
+                    if (movie != null) {
+                        displayedMovies.set(displayedMovies.indexOf(movie), updated);
+                    }
+                }
+                // Muda o total e o conteúdo das páginas (ou eventos foram descartados): busca a página atual de novo
+                case "FILME_CRIADO", "FILME_EXCLUIDO", "RESINCRONIZAR" -> loadPage(currentPage);
+                default -> {
+                }
+            }
+        });
+    }
+
+    private Movie findDisplayedMovie(String id) {
+        for (Movie movie : displayedMovies) {
+            if (String.valueOf(movie.getId()).equals(id)) {
+                return movie;
+            }
+        }
+        return null;
+    }
+
+    private void loadPage(int page) {
+        String cursor = pageCursors.get(page - 1);
+        String selectedGenre = genreFilterComboBox.getValue();
+        String genre = (selectedGenre == null || selectedGenre.equals("Todos")) ? null : selectedGenre;
+        String sortBy = SORT_OPTIONS.getOrDefault(sortComboBox.getValue(), "id");
+
         Task<String> loadMoviesTask = new Task<>() {
             @Override
             protected String call() {
                 String token = SessionManager.getInstance().getToken();
-                return ServerConnection.getInstance().listMovies(token);
+                return ServerConnection.getInstance().listMovies(token, ITEMS_PER_PAGE, cursor, genre, sortBy);
             }
         };
 
         loadMoviesTask.setOnSucceeded(event -> {
             String responseJson = loadMoviesTask.getValue();
             Platform.runLater(() -> {
-                allMoviesMasterList.clear(); // Limpa a lista mestre
                 if (responseJson == null) {
                     showErrorAlert("Erro de comunicação ao carregar filmes.");
                     moviesTable.setPlaceholder(new Label("Erro ao carregar filmes."));
@@ -122,18 +207,15 @@ public class MoviesController {
                 try {
                     JSONObject response = new JSONObject(responseJson);
                     if ("200".equals(response.getString("status"))) {
+                        List<Movie> pageMovies = new ArrayList<>();
                         JSONArray movies = response.getJSONArray("filmes");
-                        if (movies.isEmpty()){
-                            moviesTable.setPlaceholder(new Label("Nenhum filme cadastrado no momento."));
-                        } else {
-                            for (int i = 0; i < movies.length(); i++) {
-                                allMoviesMasterList.add(Movie.fromJson(movies.getJSONObject(i)));
-                            }
+                        for (int i = 0; i < movies.length(); i++) {
+                            pageMovies.add(Movie.fromJson(movies.getJSONObject(i)));
                         }
-                        // Após carregar tudo, aplica filtros e paginação
-                        currentPage = 1;
-                        updateTableData();
-
+                        int totalItems = Integer.parseInt(response.optString("total", "0"));
+                        nextCursor = response.optString("proximo_cursor", null);
+                        currentPage = page;
+                        updateTableData(pageMovies, totalItems, genre);
                     } else {
                         String message = response.optString("mensagem", "Não foi possível carregar os filmes.");
                         showErrorAlert(message);
@@ -155,62 +237,41 @@ public class MoviesController {
     }
 
     /**
-     * Filtra a lista mestre e aplica a paginação.
+     * Exibe a página recebida e atualiza os controles de paginação.
      */
-    private void updateTableData() {
-        String selectedGenre = genreFilterComboBox.getValue();
-
-        // 1. Filtragem
-        List<Movie> filteredList;
-        if (selectedGenre == null || selectedGenre.equals("Todos")) {
-            filteredList = new ArrayList<>(allMoviesMasterList);
-        } else {
-            filteredList = allMoviesMasterList.stream()
-                    .filter(m -> m.getGeneros().contains(selectedGenre))
-                    .collect(Collectors.toList());
-        }
-
-        // 2. Cálculo de Paginação
-        int totalItems = filteredList.size();
+    private void updateTableData(List<Movie> pageMovies, int totalItems, String genre) {
         totalPages = (int) Math.ceil((double) totalItems / ITEMS_PER_PAGE);
         if (totalPages == 0) totalPages = 1;
 
-        // Garante que a página atual é válida
-        if (currentPage > totalPages) currentPage = totalPages;
-        if (currentPage < 1) currentPage = 1;
+        displayedMovies.setAll(pageMovies);
 
-        int fromIndex = (currentPage - 1) * ITEMS_PER_PAGE;
-        int toIndex = Math.min(fromIndex + ITEMS_PER_PAGE, totalItems);
-
-        // 3. Atualização da Tabela
-        displayedMovies.clear();
-        if (totalItems > 0) {
-            displayedMovies.addAll(filteredList.subList(fromIndex, toIndex));
-        }
-
-        // 4. Atualização dos Controles de UI
         pageLabel.setText("Página " + currentPage + " de " + totalPages);
         prevPageButton.setDisable(currentPage == 1);
-        nextPageButton.setDisable(currentPage == totalPages);
+        nextPageButton.setDisable(nextCursor == null);
 
         if (displayedMovies.isEmpty()) {
-            moviesTable.setPlaceholder(new Label("Nenhum filme encontrado para este filtro."));
+            moviesTable.setPlaceholder(new Label(genre == null
+                    ? "Nenhum filme cadastrado no momento."
+                    : "Nenhum filme encontrado para este filtro."));
         }
     }
 
     @FXML
     private void handlePrevPage() {
         if (currentPage > 1) {
-            currentPage--;
-            updateTableData();
+            loadPage(currentPage - 1);
         }
     }
 
     @FXML
     private void handleNextPage() {
-        if (currentPage < totalPages) {
-            currentPage++;
-            updateTableData();
+        if (nextCursor != null) {
+            if (pageCursors.size() == currentPage) {
+                pageCursors.add(nextCursor);
+            } else {
+                pageCursors.set(currentPage, nextCursor);
+            }
+            loadPage(currentPage + 1);
         }
     }
 
@@ -312,14 +373,64 @@ public class MoviesController {
         new Thread(loadDetailsTask).start();
     }
 
+    // Número abre o filme pelo ID; texto busca por título, diretor e sinopse e mostra os resultados na tabela
     @FXML
     private void handleSearchById() {
-        String idText = searchIdField.getText().trim();
-        if (!idText.matches("\\d+")) {
-            showErrorAlert("Por favor, digite um ID numérico válido.");
+        String text = searchIdField.getText().trim();
+        if (text.isEmpty()) {
+            loadMovies();
             return;
         }
-        fetchAndShowDetails(idText);
+        if (text.matches("\\d+")) {
+            fetchAndShowDetails(text);
+            return;
+        }
+        searchMovies(text);
+    }
+
+    private void searchMovies(String text) {
+        Task<String> searchTask = new Task<>() {
+            @Override
+            protected String call() {
+                String token = SessionManager.getInstance().getToken();
+                return ServerConnection.getInstance().searchMovies(token, text, SEARCH_RESULTS_LIMIT);
+            }
+        };
+
+        searchTask.setOnSucceeded(event -> {
+            String responseJson = searchTask.getValue();
+            Platform.runLater(() -> {
+                if (responseJson == null) {
+                    showErrorAlert("Erro de comunicação ao buscar filmes.");
+                    return;
+                }
+                try {
+                    JSONObject response = new JSONObject(responseJson);
+                    if ("200".equals(response.getString("status"))) {
+                        List<Movie> results = new ArrayList<>();
+                        JSONArray movies = response.getJSONArray("filmes");
+                        for (int i = 0; i < movies.length(); i++) {
+                            results.add(Movie.fromJson(movies.getJSONObject(i)));
+                        }
+                        displayedMovies.setAll(results);
+                        pageLabel.setText(response.optString("total", "0") + " resultado(s) para \"" + text + "\"");
+                        prevPageButton.setDisable(true);
+                        nextPageButton.setDisable(true);
+                        if (results.isEmpty()) {
+                            moviesTable.setPlaceholder(new Label("Nenhum filme encontrado para a busca."));
+                        }
+                    } else {
+                        showErrorAlert(response.optString("mensagem", "Erro ao buscar filmes."));
+                    }
+                } catch (Exception e) {
+                    showErrorAlert("Erro ao processar a resposta da busca: " + e.getMessage());
+                }
+            });
+        });
+
+        searchTask.setOnFailed(event -> Platform.runLater(() -> showErrorAlert("Falha na tarefa de buscar filmes.")));
+
+        new Thread(searchTask).start();
     }
 
     private void showDetailsWindow(Movie movie, JSONArray reviewsArray) {
@@ -336,6 +447,7 @@ public class MoviesController {
             controller.setMovieDetails(movie, reviewsArray);
 
             stage.showAndWait();
+            controller.stopLiveUpdates();
         } catch (IOException e) {
             System.err.println("Erro ao abrir detalhes do filme: " + e.getMessage());
             showErrorAlert("Não foi possível abrir a tela de detalhes.");
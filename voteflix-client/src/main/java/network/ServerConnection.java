@@ -2,25 +2,61 @@ package network;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
+import protocol.FrameCodec;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 public class ServerConnection {
 
     private static ServerConnection instance;
-    private Socket socket;
-    private PrintWriter out;
-    private BufferedReader in;
+    private volatile Socket socket;
+    private volatile OutputStream out;
+    private volatile DataInputStream in;
+    private final Object writeLock = new Object();
+
+    // Com -Dvoteflix.binario=true e/ou -Dvoteflix.compressao=true o cliente faz o HELLO ao conectar;
+    // o que o servidor não aceitar fica como antes (JSON por linha, sem compressão)
+    private static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+    private volatile boolean preferBinary = Boolean.getBoolean("voteflix.binario");
+    private volatile boolean preferCompression = Boolean.getBoolean("voteflix.compressao");
+    private volatile boolean framed;
+    private volatile boolean binaryEncoding;
+    private volatile int compressionThreshold = -1;
     private final DateTimeFormatter dtf = DateTimeFormatter.ofPattern("HH:mm:ss");
 
+    // Pipelining: cada requisição leva um "id_requisicao" e a thread leitora entrega a resposta
+    // ao pedido certo, mesmo que o servidor responda fora de ordem
+    private static final String REQUEST_ID_PREFIX = "{\"id_requisicao\":";
+    private final AtomicLong nextRequestId = new AtomicLong(1);
+    private final Map<Long, CompletableFuture<String>> pendingRequests = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Long> requestOrder = new ConcurrentLinkedQueue<>();
+
+    // Eventos empurrados pelo servidor (INSCREVER) não têm id_requisicao e vão para os ouvintes,
+    // chamados na thread leitora. As inscrições valem só para o socket atual.
+    private static final String EVENT_FIELD = "evento";
+    private static final String CATALOG_SUBSCRIPTION = "catalogo";
+    private final List<Consumer<JSONObject>> eventListeners = new CopyOnWriteArrayList<>();
+    private final Set<String> subscriptions = ConcurrentHashMap.newKeySet();
+
     private ServerConnection() {
     }
 
@@ -39,8 +75,16 @@ public class ServerConnection {
             socket = new Socket();
             int timeout = 3000;
             socket.connect(new InetSocketAddress(host, port), timeout);
-            out = new PrintWriter(socket.getOutputStream(), true);
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            out = new BufferedOutputStream(socket.getOutputStream());
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            framed = false;
+            binaryEncoding = false;
+            compressionThreshold = -1;
+            subscriptions.clear();
+            if (preferBinary || preferCompression) {
+                negotiateHello();
+            }
+            startReader(socket, in);
             return true;
         } catch (IOException e) {
             disconnect();
@@ -48,11 +92,46 @@ public class ServerConnection {
         }
     }
 
+    // Feito antes de a thread leitora existir: a resposta do HELLO ainda chega como linha JSON
+    private void negotiateHello() throws IOException {
+        JSONObject hello = new JSONObject();
+        hello.put("operacao", FrameCodec.HELLO);
+        if (preferBinary) {
+            hello.put(FrameCodec.FIELD_ENCODINGS, new JSONArray().put(FrameCodec.ENCODING_BINARY).put(FrameCodec.ENCODING_JSON));
+        }
+        if (preferCompression) {
+            hello.put(FrameCodec.FIELD_COMPRESSIONS, new JSONArray().put(FrameCodec.COMPRESSION_DEFLATE));
+        }
+        log("-> Para Servidor: " + hello);
+        writeLine(out, hello.toString());
+
+        String line = readLine(in);
+        if (line == null) {
+            throw new IOException("Servidor fechou a conexão durante o HELLO.");
+        }
+        log("<- De Servidor: " + line);
+        JSONObject response = new JSONObject(line);
+        binaryEncoding = FrameCodec.ENCODING_BINARY.equals(response.optString(FrameCodec.FIELD_ENCODING));
+        if (FrameCodec.COMPRESSION_DEFLATE.equals(response.optString(FrameCodec.FIELD_COMPRESSION))) {
+            compressionThreshold = response.optInt(FrameCodec.FIELD_COMPRESSION_THRESHOLD, 0);
+        }
+        framed = binaryEncoding || compressionThreshold >= 0;
+    }
+
+    public void setPreferBinary(boolean preferBinary) {
+        this.preferBinary = preferBinary;
+    }
+
+    public void setPreferCompression(boolean preferCompression) {
+        this.preferCompression = preferCompression;
+    }
+
     public void disconnect() {
         try {
+            // O socket fecha primeiro para liberar a thread leitora bloqueada na leitura
+            if (socket != null) socket.close();
             if (in != null) in.close();
             if (out != null) out.close();
-            if (socket != null) socket.close();
         } catch (IOException e) {
             System.err.println("Erro ao desconectar: " + e.getMessage());
         } finally {
@@ -66,27 +145,191 @@ public class ServerConnection {
         return socket != null && socket.isConnected() && !socket.isClosed();
     }
 
-    private String sendRequestAndGetResponse(String jsonRequest) {
-        if (!isConnected()) {
-            return createErrorResponse("Nao conectado ao servidor.");
+    private String sendRequestAndGetResponse(JSONObject request) {
+        return sendRequestAsync(request).join();
+    }
+
+    // Várias chamadas podem estar pendentes ao mesmo tempo no mesmo socket
+    public CompletableFuture<String> sendRequestAsync(JSONObject request) {
+        OutputStream stream = out;
+        if (!isConnected() || stream == null) {
+            return CompletableFuture.completedFuture(createErrorResponse("Nao conectado ao servidor."));
         }
+        long requestId = nextRequestId.getAndIncrement();
+        request.put("id_requisicao", requestId);
+        CompletableFuture<String> future = new CompletableFuture<>();
+        pendingRequests.put(requestId, future);
+        requestOrder.add(requestId);
+
+        String jsonRequest = request.toString();
+        log("-> Para Servidor: " + jsonRequest);
         try {
-            log("-> Para Servidor: " + jsonRequest);
-            out.println(jsonRequest);
-            String response = in.readLine();
-            if (response == null) {
+            if (framed) {
+                writeFrame(stream, request);
+            } else {
+                writeLine(stream, jsonRequest);
+            }
+        } catch (IOException e) {
+            failPendingRequests();
+        }
+        return future;
+    }
+
+    private void writeLine(OutputStream stream, String json) throws IOException {
+        byte[] bytes = (json + "\n").getBytes(StandardCharsets.UTF_8);
+        synchronized (writeLock) {
+            stream.write(bytes);
+            stream.flush();
+        }
+    }
+
+    private void writeFrame(OutputStream stream, JSONObject request) throws IOException {
+        synchronized (writeLock) {
+            FrameCodec.write(stream, request, binaryEncoding, compressionThreshold);
+            stream.flush();
+        }
+    }
+
+    // Lê uma linha UTF-8 terminada em '\n'; null no fim do stream
+    private static String readLine(DataInputStream input) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        int b;
+        while ((b = input.read()) != -1) {
+            if (b == '\n') {
+                return line.toString(StandardCharsets.UTF_8);
+            }
+            line.write(b);
+        }
+        return line.size() > 0 ? line.toString(StandardCharsets.UTF_8) : null;
+    }
+
+    private void startReader(Socket readerSocket, DataInputStream reader) {
+        boolean binary = framed;
+        Thread readerThread = new Thread(() -> {
+            try {
+                if (binary) {
+                    byte[] frame;
+                    while ((frame = FrameCodec.read(reader, MAX_FRAME_LENGTH)) != null) {
+                        JSONObject response = FrameCodec.decode(frame, MAX_FRAME_LENGTH);
+                        String text = response.toString();
+                        log("<- De Servidor: " + text);
+                        if (!response.has("id_requisicao") && response.has(EVENT_FIELD)) {
+                            dispatchEvent(response);
+                            continue;
+                        }
+                        dispatchResponse(response.has("id_requisicao") ? response.getLong("id_requisicao") : null, text);
+                    }
+                } else {
+                    String line;
+                    while ((line = readLine(reader)) != null) {
+                        log("<- De Servidor: " + line);
+                        dispatchLine(line);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // Conexão encerrada ou mensagem inválida
+            }
+            if (socket == readerSocket) {
                 disconnect();
-                String errorResponse = createErrorResponse("A conexao com o servidor foi perdida.");
+            }
+            failPendingRequests();
+        }, "voteflix-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    private void dispatchResponse(Long requestId, String line) {
+        if (requestId == null) {
+            // Resposta sem id (ex.: JSON inválido): vai para a requisição mais antiga
+            requestId = requestOrder.peek();
+        }
+        if (requestId == null) {
+            return;
+        }
+        requestOrder.remove(requestId);
+        CompletableFuture<String> future = pendingRequests.remove(requestId);
+        if (future != null) {
+            future.complete(line);
+        }
+    }
+
+    // Respostas trazem o id na frente; só as linhas sem ele (eventos e erros sem id) são parseadas aqui
+    private void dispatchLine(String line) {
+        if (line.startsWith(REQUEST_ID_PREFIX)) {
+            int start = REQUEST_ID_PREFIX.length();
+            int end = start;
+            while (end < line.length() && Character.isDigit(line.charAt(end))) {
+                end++;
+            }
+            if (end > start) {
+                dispatchResponse(Long.parseLong(line.substring(start, end)), line);
+                return;
+            }
+        }
+        Long requestId = null;
+        try {
+            JSONObject json = new JSONObject(line);
+            if (!json.has("id_requisicao") && json.has(EVENT_FIELD)) {
+                dispatchEvent(json);
+                return;
+            }
+            requestId = json.has("id_requisicao") ? json.getLong("id_requisicao") : null;
+        } catch (Exception e) {
+            // Linha inválida: fica com a requisição mais antiga
+        }
+        dispatchResponse(requestId, line);
+    }
+
+    private void dispatchEvent(JSONObject event) {
+        for (Consumer<JSONObject> listener : eventListeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                log("Erro ao tratar evento do servidor: " + e.getMessage());
+            }
+        }
+    }
+
+    public void addEventListener(Consumer<JSONObject> listener) {
+        eventListeners.add(listener);
+    }
+
+    public void removeEventListener(Consumer<JSONObject> listener) {
+        eventListeners.remove(listener);
+    }
+
+    // movieId null = catálogo. Não espera a resposta; repetir a mesma inscrição não gera requisição.
+    public void subscribe(String token, String movieId) {
+        if (subscriptions.add(movieId != null ? movieId : CATALOG_SUBSCRIPTION)) {
+            sendRequestAsync(subscriptionRequest("INSCREVER", token, movieId));
+        }
+    }
+
+    public void unsubscribe(String token, String movieId) {
+        if (subscriptions.remove(movieId != null ? movieId : CATALOG_SUBSCRIPTION)) {
+            sendRequestAsync(subscriptionRequest("CANCELAR_INSCRICAO", token, movieId));
+        }
+    }
+
+    private JSONObject subscriptionRequest(String operacao, String token, String movieId) {
+        JSONObject request = new JSONObject();
+        request.put("operacao", operacao);
+        if (movieId != null) {
+            request.put("id_filme", movieId);
+        }
+        request.put("token", token);
+        return request;
+    }
+
+    private void failPendingRequests() {
+        String errorResponse = createErrorResponse("A conexao com o servidor foi perdida.");
+        Long requestId;
+        while ((requestId = requestOrder.poll()) != null) {
+            CompletableFuture<String> future = pendingRequests.remove(requestId);
+            if (future != null) {
                 log("<- De Servidor: " + errorResponse);
-                return errorResponse;
+                future.complete(errorResponse);
             }
-            log("<- De Servidor: " + response);
-            return response;
-        } catch (IOException e) {
-            disconnect();
-            String errorResponse = createErrorResponse("A conexao com o servidor foi perdida.");
-            log("<- De Servidor: " + errorResponse);
-            return errorResponse;
         }
     }
 
@@ -95,7 +338,7 @@ public class ServerConnection {
         request.put("operacao", "LOGIN");
         request.put("usuario", username);
         request.put("senha", password);
-        return sendRequestAndGetResponse(request.toString());
+        return sendRequestAndGetResponse(request);
     }
 
     public String createUser(String username, String password) {
@@ -105,14 +348,14 @@ public class ServerConnection {
         JSONObject request = new JSONObject();
         request.put("operacao", "CRIAR_USUARIO");
         request.put("usuario", user);
-        return sendRequestAndGetResponse(request.toString());
+        return sendRequestAndGetResponse(request);
     }
 
     public void logout(String token) {
         JSONObject request = new JSONObject();
         request.put("operacao", "LOGOUT");
         request.put("token", token);
-        sendRequestAndGetResponse(request.toString());
+        sendRequestAndGetResponse(request);
         disconnect();
     }
 
@@ -123,14 +366,14 @@ public class ServerConnection {
         request.put("operacao", "EDITAR_PROPRIO_USUARIO");
         request.put("usuario", user);
         request.put("token", token);
-        return sendRequestAndGetResponse(request.toString());
+        return sendRequestAndGetResponse(request);
     }
 
     public void deleteOwnUser(String token) {
         JSONObject request = new JSONObject();
         request.put("operacao", "EXCLUIR_PROPRIO_USUARIO");
         request.put("token", token);
-        String response = sendRequestAndGetResponse(request.toString());
+        String response = sendRequestAndGetResponse(request);
         if (response != null) {
             try {
                 JSONObject jsonResponse = new JSONObject(response);
@@ -150,7 +393,7 @@ public class ServerConnection {
         JSONObject request = new JSONObject();
         request.put("operacao", "LISTAR_PROPRIO_USUARIO");
         request.put("token", token);
-        return sendRequestAndGetResponse(request.toString());
+        return sendRequestAndGetResponse(request);
     }
 
     public String createMovie(String token, String titulo, String diretor, String ano, List<String> generos, String sinopse) {
@@ -165,14 +408,36 @@ public class ServerConnection {
         request.put("operacao", "CRIAR_FILME");
         request.put("filme", movie);
         request.put("token", token);
-        return sendRequestAndGetResponse(request.toString());
+        return sendRequestAndGetResponse(request);
     }
 
-    public String listMovies(String token) {
+    // Uma página da listagem; cursor é o "proximo_cursor" da página anterior (null na primeira).
+    // sortBy é o "ordenar_por" do servidor (id, nota, avaliacoes, ano ou titulo), na ordem padrão de cada um.
+    public String listMovies(String token, int limit, String cursor, String genre, String sortBy) {
         JSONObject request = new JSONObject();
         request.put("operacao", "LISTAR_FILMES");
+        request.put("limite", String.valueOf(limit));
+        if (cursor != null) {
+            request.put("cursor", cursor);
+        }
+        if (genre != null) {
+            request.put("genero", genre);
+        }
+        if (sortBy != null) {
+            request.put("ordenar_por", sortBy);
+        }
+        request.put("token", token);
+        return sendRequestAndGetResponse(request);
+    }
+
+    // Busca por texto em título, diretor e sinopse; resultados em ordem de relevância
+    public String searchMovies(String token, String text, int limit) {
+        JSONObject request = new JSONObject();
+        request.put("operacao", "BUSCAR_FILMES");
+        request.put("busca", text);
+        request.put("limite", String.valueOf(limit));
         request.put("token", token);
-        return sendRequestAndGetResponse(request.toString());
+        return sendRequestAndGetResponse(request);
     }
 
     public String getMovieById(String token, String movieId) {
@@ -180,7 +445,7 @@ public class ServerConnection {
         request.put("operacao", "BUSCAR_FILME_ID");
         request.put("id_filme", movieId);
         request.put("token", token);
-        return sendRequestAndGetResponse(request.toString());
+        return sendRequestAndGetResponse(request);
     }
 
     public String updateMovie(String token, String id, String titulo, String diretor, String ano, List<String> generos, String sinopse) {
@@ -196,7 +461,7 @@ public class ServerConnection {
         request.put("operacao", "EDITAR_FILME");
         request.put("filme", movie);
         request.put("token", token);
-        return sendRequestAndGetResponse(request.toString());
+        return sendRequestAndGetResponse(request);
     }
 
     public String deleteMovie(String token, String id) {
@@ -204,14 +469,14 @@ public class ServerConnection {
         request.put("operacao", "EXCLUIR_FILME");
         request.put("id", id);
         request.put("token", token);
-        return sendRequestAndGetResponse(request.toString());
+        return sendRequestAndGetResponse(request);
     }
 
     public String listUsers(String token) {
         JSONObject request = new JSONObject();
         request.put("operacao", "LISTAR_USUARIOS");
         request.put("token", token);
-        return sendRequestAndGetResponse(request.toString());
+        return sendRequestAndGetResponse(request);
     }
 
     public String adminEditUser(String token, String userId, String newPassword) {
@@ -223,7 +488,7 @@ public class ServerConnection {
         request.put("id", userId);
         request.put("usuario", user);
         request.put("token", token);
-        return sendRequestAndGetResponse(request.toString());
+        return sendRequestAndGetResponse(request);
     }
 
     public String adminDeleteUser(String token, String userId) {
@@ -231,7 +496,7 @@ public class ServerConnection {
         request.put("operacao", "ADMIN_EXCLUIR_USUARIO");
         request.put("id", userId);
         request.put("token", token);
-        return sendRequestAndGetResponse(request.toString());
+        return sendRequestAndGetResponse(request);
     }
 
     public String createReview(String token, String movieId, int nota, String titulo, String descricao) {
@@ -245,14 +510,14 @@ public class ServerConnection {
         request.put("operacao", "CRIAR_REVIEW");
         request.put("review", review);
         request.put("token", token);
-        return sendRequestAndGetResponse(request.toString());
+        return sendRequestAndGetResponse(request);
     }
 
     public String listUserReviews(String token) {
         JSONObject request = new JSONObject();
         request.put("operacao", "LISTAR_REVIEWS_USUARIO");
         request.put("token", token);
-        return sendRequestAndGetResponse(request.toString());
+        return sendRequestAndGetResponse(request);
     }
 
     public String editReview(String token, String reviewId, int nota, String titulo, String descricao) {
@@ -266,7 +531,7 @@ public class ServerConnection {
         request.put("operacao", "EDITAR_REVIEW");
         request.put("review", review);
         request.put("token", token);
-        return sendRequestAndGetResponse(request.toString());
+        return sendRequestAndGetResponse(request);
     }
 
     public String deleteReview(String token, String reviewId) {
@@ -274,7 +539,7 @@ public class ServerConnection {
         request.put("operacao", "EXCLUIR_REVIEW");
         request.put("id", reviewId);
         request.put("token", token);
-        return sendRequestAndGetResponse(request.toString());
+        return sendRequestAndGetResponse(request);
     }
 
 
@@ -0,0 +1,257 @@
+package protocol;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+
+// Codificação binária "tag-tamanho-valor" das mesmas mensagens JSON do protocolo.
+// Números e tamanhos usam varint e strings vão como bytes UTF-8 com o tamanho na frente,
+// então decodificar é copiar fatias em vez de tokenizar texto caractere por caractere.
+public final class BinaryCodec {
+
+    static final byte TAG_NULL = 0;
+    static final byte TAG_FALSE = 1;
+    static final byte TAG_TRUE = 2;
+    static final byte TAG_INT = 3;      // varint com zigzag
+    static final byte TAG_DOUBLE = 4;   // 8 bytes, big-endian
+    static final byte TAG_STRING = 5;   // varint tamanho + UTF-8
+    static final byte TAG_ARRAY = 6;    // varint quantidade + valores
+    static final byte TAG_OBJECT = 7;   // varint quantidade + (chave, valor)
+
+    // Arrays e objetos aninhados além disso são recusados: a leitura é recursiva, e um payload pequeno
+    // de arrays dentro de arrays estouraria a pilha da worker em vez de virar um erro 400
+    static final int MAX_DEPTH = 64;
+
+    private BinaryCodec() {
+    }
+
+    public static byte[] encode(JSONObject object) {
+        Writer writer = new Writer(256, 0);
+        writer.writeValue(object);
+        return writer.toByteArray();
+    }
+
+    // Reserva "headroom" bytes no início para o cabeçalho do frame, evitando uma cópia extra
+    static Writer encodeWithHeadroom(JSONObject object, int headroom) {
+        Writer writer = new Writer(256, headroom);
+        writer.writeValue(object);
+        return writer;
+    }
+
+    public static JSONObject decode(byte[] data, int offset, int length) {
+        Reader reader = new Reader(data, offset, offset + length);
+        Object value = reader.readValue();
+        if (!(value instanceof JSONObject)) {
+            throw new IllegalArgumentException("Mensagem binária não contém um objeto.");
+        }
+        if (reader.position != reader.limit) {
+            throw new IllegalArgumentException("Bytes sobrando após o objeto.");
+        }
+        return (JSONObject) value;
+    }
+
+    static final class Writer {
+        byte[] bytes;
+        int size;
+
+        Writer(int initialCapacity, int headroom) {
+            this.bytes = new byte[Math.max(initialCapacity, headroom + 16)];
+            this.size = headroom;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            bytes[size++] = (byte) b;
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeString(String s) {
+            int length = s.length();
+            // Caminho rápido para ASCII, o caso comum em chaves e valores do protocolo
+            ensure(length + 5);
+            int start = size;
+            writeVarLong(length);
+            int dataStart = size;
+            for (int i = 0; i < length; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x80) {
+                    size = start;
+                    byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+                    writeVarLong(utf8.length);
+                    ensure(utf8.length);
+                    System.arraycopy(utf8, 0, bytes, size, utf8.length);
+                    size += utf8.length;
+                    return;
+                }
+                bytes[dataStart + i] = (byte) c;
+            }
+            size = dataStart + length;
+        }
+
+        void writeValue(Object value) {
+            if (value == null || value == JSONObject.NULL) {
+                writeByte(TAG_NULL);
+            } else if (value instanceof String s) {
+                writeByte(TAG_STRING);
+                writeString(s);
+            } else if (value instanceof Boolean b) {
+                writeByte(b ? TAG_TRUE : TAG_FALSE);
+            } else if (value instanceof Integer || value instanceof Long || value instanceof Short
+                    || value instanceof Byte || value instanceof BigInteger) {
+                long n = ((Number) value).longValue();
+                writeByte(TAG_INT);
+                writeVarLong((n << 1) ^ (n >> 63));
+            } else if (value instanceof Number n) {
+                writeByte(TAG_DOUBLE);
+                long bits = Double.doubleToLongBits(n.doubleValue());
+                ensure(8);
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    bytes[size++] = (byte) (bits >>> shift);
+                }
+            } else if (value instanceof JSONObject object) {
+                writeByte(TAG_OBJECT);
+                writeVarLong(object.length());
+                Iterator<String> keys = object.keys();
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    writeString(key);
+                    writeValue(object.opt(key));
+                }
+            } else if (value instanceof JSONArray array) {
+                writeByte(TAG_ARRAY);
+                writeVarLong(array.length());
+                for (int i = 0; i < array.length(); i++) {
+                    writeValue(array.opt(i));
+                }
+            } else {
+                // Enums e outros tipos aceitos pelo org.json seguem como texto
+                writeByte(TAG_STRING);
+                writeString(value.toString());
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+
+    private static final class Reader {
+        final byte[] data;
+        final int limit;
+        int position;
+        private int depth;
+
+        Reader(byte[] data, int offset, int limit) {
+            this.data = data;
+            this.position = offset;
+            this.limit = limit;
+        }
+
+        private byte readByte() {
+            if (position >= limit) {
+                throw new IllegalArgumentException("Mensagem binária truncada.");
+            }
+            return data[position++];
+        }
+
+        private long readVarLong() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("Varint inválido.");
+        }
+
+        private int readLength() {
+            long length = readVarLong();
+            if (length < 0 || length > limit - position) {
+                throw new IllegalArgumentException("Tamanho inválido na mensagem binária.");
+            }
+            return (int) length;
+        }
+
+        private String readString() {
+            int length = readLength();
+            String s = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return s;
+        }
+
+        private void enter() {
+            if (++depth > MAX_DEPTH) {
+                throw new IllegalArgumentException("Mensagem binária aninhada demais.");
+            }
+        }
+
+        Object readValue() {
+            byte tag = readByte();
+            switch (tag) {
+                case TAG_NULL:
+                    return JSONObject.NULL;
+                case TAG_FALSE:
+                    return Boolean.FALSE;
+                case TAG_TRUE:
+                    return Boolean.TRUE;
+                case TAG_INT: {
+                    long raw = readVarLong();
+                    long n = (raw >>> 1) ^ -(raw & 1);
+                    return (n == (int) n) ? (Object) (int) n : (Object) n;
+                }
+                case TAG_DOUBLE: {
+                    long bits = 0;
+                    for (int i = 0; i < 8; i++) {
+                        bits = (bits << 8) | (readByte() & 0xFF);
+                    }
+                    return Double.longBitsToDouble(bits);
+                }
+                case TAG_STRING:
+                    return readString();
+                case TAG_ARRAY: {
+                    int count = readLength();
+                    enter();
+                    JSONArray array = new JSONArray();
+                    for (int i = 0; i < count; i++) {
+                        array.put(readValue());
+                    }
+                    depth--;
+                    return array;
+                }
+                case TAG_OBJECT: {
+                    int count = readLength();
+                    enter();
+                    JSONObject object = new JSONObject();
+                    for (int i = 0; i < count; i++) {
+                        String key = readString();
+                        object.put(key, readValue());
+                    }
+                    depth--;
+                    return object;
+                }
+                default:
+                    throw new IllegalArgumentException("Tag desconhecida na mensagem binária: " + tag);
+            }
+        }
+    }
+}
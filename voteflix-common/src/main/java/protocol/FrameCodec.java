@@ -0,0 +1,188 @@
+package protocol;
+
+import org.json.JSONObject;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Frames usados depois do HELLO: [tamanho: int de 4 bytes][flags: 1 byte][payload].
+// O tamanho conta flags + payload. Sem FLAG_BINARY o payload é o JSON em UTF-8;
+// com FLAG_DEFLATE o payload é [tamanho original: int de 4 bytes][dados comprimidos].
+public final class FrameCodec {
+
+    public static final String HELLO = "HELLO";
+    public static final String FIELD_ENCODINGS = "codificacoes";
+    public static final String FIELD_ENCODING = "codificacao";
+    public static final String ENCODING_JSON = "json";
+    public static final String ENCODING_BINARY = "binario";
+    public static final String FIELD_COMPRESSIONS = "compressoes";
+    public static final String FIELD_COMPRESSION = "compressao";
+    public static final String FIELD_COMPRESSION_THRESHOLD = "limite_compressao";
+    public static final String COMPRESSION_DEFLATE = "deflate";
+    public static final String COMPRESSION_NONE = "nenhuma";
+
+    public static final int LENGTH_FIELD_SIZE = 4;
+    public static final int HEADER_SIZE = LENGTH_FIELD_SIZE + 1;
+    public static final byte FLAG_BINARY = 1;
+    public static final byte FLAG_DEFLATE = 2;
+
+    private FrameCodec() {
+    }
+
+    // compressionThreshold < 0 desliga a compressão; payloads menores que o limite vão sem compressão
+    public static ByteBuffer encode(JSONObject message, boolean binary, int compressionThreshold) {
+        byte[] frame;
+        int payloadLength;
+        byte flags;
+        if (binary) {
+            // Codifica direto num array com espaço para o cabeçalho, sem cópia intermediária
+            BinaryCodec.Writer writer = BinaryCodec.encodeWithHeadroom(message, HEADER_SIZE);
+            frame = writer.bytes;
+            payloadLength = writer.size - HEADER_SIZE;
+            flags = FLAG_BINARY;
+        } else {
+            byte[] json = message.toString().getBytes(StandardCharsets.UTF_8);
+            frame = new byte[HEADER_SIZE + json.length];
+            System.arraycopy(json, 0, frame, HEADER_SIZE, json.length);
+            payloadLength = json.length;
+            flags = 0;
+        }
+        return finish(frame, payloadLength, flags, compressionThreshold);
+    }
+
+    // "frame" já tem o payload a partir de HEADER_SIZE; preenche o cabeçalho ou troca por um frame comprimido
+    static ByteBuffer finish(byte[] frame, int payloadLength, byte flags, int compressionThreshold) {
+        if (compressionThreshold >= 0 && payloadLength >= compressionThreshold) {
+            byte[] compressed = deflate(frame, HEADER_SIZE, payloadLength);
+            // Só usa a versão comprimida se ela de fato for menor
+            if (compressed.length - HEADER_SIZE < payloadLength) {
+                writeHeader(compressed, compressed.length - HEADER_SIZE, (byte) (flags | FLAG_DEFLATE));
+                return ByteBuffer.wrap(compressed);
+            }
+        }
+        writeHeader(frame, payloadLength, flags);
+        return ByteBuffer.wrap(frame, 0, HEADER_SIZE + payloadLength);
+    }
+
+    // Retorna um frame completo: cabeçalho reservado + tamanho original + dados comprimidos
+    private static byte[] deflate(byte[] data, int offset, int length) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data, offset, length);
+            deflater.finish();
+            int start = HEADER_SIZE + LENGTH_FIELD_SIZE;
+            byte[] out = new byte[start + Math.max(64, length / 2)];
+            writeInt(out, HEADER_SIZE, length);
+            int size = start;
+            while (!deflater.finished()) {
+                if (size == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                size += deflater.deflate(out, size, out.length - size);
+            }
+            return Arrays.copyOf(out, size);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static void writeHeader(byte[] frame, int payloadLength, byte flags) {
+        writeInt(frame, 0, payloadLength + 1);
+        frame[LENGTH_FIELD_SIZE] = flags;
+    }
+
+    private static void writeInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+    private static int readInt(byte[] source, int offset) {
+        return ((source[offset] & 0xFF) << 24) | ((source[offset + 1] & 0xFF) << 16)
+                | ((source[offset + 2] & 0xFF) << 8) | (source[offset + 3] & 0xFF);
+    }
+
+    public static void write(OutputStream out, JSONObject message, boolean binary, int compressionThreshold) throws IOException {
+        ByteBuffer frame = encode(message, binary, compressionThreshold);
+        out.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+    }
+
+    // Retorna flags + payload (o primeiro byte são as flags), ou null no fim do stream
+    public static byte[] read(DataInputStream in, int maxFrameLength) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length <= 0 || length > maxFrameLength) {
+            throw new IOException("Frame com tamanho inválido: " + length);
+        }
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        return frame;
+    }
+
+    // Decodifica um frame já sem o campo de tamanho (flags + payload).
+    // maxLength limita o tamanho descomprimido, para um frame pequeno não virar gigabytes em memória.
+    public static JSONObject decode(byte[] frame, int maxLength) {
+        byte flags = frame[0];
+        byte[] data = frame;
+        int offset = 1;
+        int length = frame.length - 1;
+        if ((flags & FLAG_DEFLATE) != 0) {
+            data = inflate(frame, maxLength);
+            offset = 0;
+            length = data.length;
+        }
+        if ((flags & FLAG_BINARY) != 0) {
+            return BinaryCodec.decode(data, offset, length);
+        }
+        return new JSONObject(new String(data, offset, length, StandardCharsets.UTF_8));
+    }
+
+    private static byte[] inflate(byte[] frame, int maxLength) {
+        if (frame.length < 1 + LENGTH_FIELD_SIZE) {
+            throw new IllegalArgumentException("Frame comprimido truncado.");
+        }
+        int originalLength = readInt(frame, 1);
+        if (originalLength < 0 || originalLength > maxLength) {
+            throw new IllegalArgumentException("Tamanho descomprimido inválido: " + originalLength);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            int start = 1 + LENGTH_FIELD_SIZE;
+            inflater.setInput(frame, start, frame.length - start);
+            byte[] out = new byte[originalLength];
+            int size = 0;
+            while (size < originalLength && !inflater.finished()) {
+                int n = inflater.inflate(out, size, originalLength - size);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                size += n;
+            }
+            // Com a saída cheia o marcador de fim ainda pode estar pendente; qualquer byte a mais é erro
+            if (size == originalLength && !inflater.finished() && inflater.inflate(new byte[1]) > 0) {
+                throw new IllegalArgumentException("Dados comprimidos maiores que o tamanho declarado.");
+            }
+            if (size != originalLength || !inflater.finished()) {
+                throw new IllegalArgumentException("Dados comprimidos não conferem com o tamanho declarado.");
+            }
+            return out;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Dados comprimidos inválidos.", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package protocol;
+
+import java.nio.charset.StandardCharsets;
+
+// Strings JSON escritas direto em UTF-8, com os mesmos escapes nos dois serializadores do servidor
+// (PreparedMessage e a listagem transmitida em partes). Mesmo JSON do org.json, só sem os escapes opcionais.
+public final class JsonText {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private JsonText() {
+    }
+
+    // Pior caso de writeString: 6 bytes por char (escape de caractere de controle) mais as aspas
+    public static int maxEncodedLength(String s) {
+        return s.length() * 6 + 2;
+    }
+
+    // Escreve a string entre aspas a partir de "offset" e devolve a posição seguinte.
+    // Quem chama garante pelo menos maxEncodedLength(s) bytes livres.
+    public static int writeString(String s, byte[] bytes, int offset) {
+        int size = offset;
+        bytes[size++] = '"';
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                bytes[size++] = '\\';
+                bytes[size++] = (byte) c;
+            } else if (c < 0x20) {
+                bytes[size++] = '\\';
+                switch (c) {
+                    case '\n' -> bytes[size++] = 'n';
+                    case '\r' -> bytes[size++] = 'r';
+                    case '\t' -> bytes[size++] = 't';
+                    case '\b' -> bytes[size++] = 'b';
+                    case '\f' -> bytes[size++] = 'f';
+                    default -> {
+                        bytes[size++] = 'u';
+                        bytes[size++] = '0';
+                        bytes[size++] = '0';
+                        bytes[size++] = HEX[c >> 4];
+                        bytes[size++] = HEX[c & 0xF];
+                    }
+                }
+            } else if (c < 0x80) {
+                bytes[size++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[size++] = (byte) (0xC0 | (c >> 6));
+                bytes[size++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                bytes[size++] = (byte) (0xF0 | (cp >> 18));
+                bytes[size++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                bytes[size++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                bytes[size++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                bytes[size++] = '?'; // surrogate sem par não tem representação em UTF-8
+            } else {
+                bytes[size++] = (byte) (0xE0 | (c >> 12));
+                bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[size++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        bytes[size++] = '"';
+        return size;
+    }
+}
@@ -0,0 +1,172 @@
+package protocol;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+
+// Resposta serializada uma única vez e enviada muitas vezes (ex.: a lista completa de filmes).
+// O JSON e a forma binária ficam em arrays que nunca mudam depois de prontos; cada envio ganha
+// só um buffer pequeno com o cabeçalho e o id da requisição, seguido de uma fatia somente leitura
+// do corpo compartilhado. Com compressão o payload é montado e comprimido por envio.
+public final class PreparedMessage {
+
+    private final byte[] jsonLine;      // JSON em UTF-8 seguido de '\n'
+    private final byte[] binaryEntries; // só os pares (chave, valor) do objeto, sem tag e quantidade
+    private final int entryCount;
+
+    public PreparedMessage(JSONObject message) {
+        if (message.isEmpty()) {
+            throw new IllegalArgumentException("Mensagem vazia.");
+        }
+        JsonWriter json = new JsonWriter();
+        json.writeValue(message);
+        json.writeByte('\n');
+        this.jsonLine = Arrays.copyOf(json.bytes, json.size);
+        BinaryCodec.Writer writer = new BinaryCodec.Writer(256, 0);
+        for (String key : message.keySet()) {
+            writer.writeString(key);
+            writer.writeValue(message.opt(key));
+        }
+        this.binaryEntries = writer.toByteArray();
+        this.entryCount = message.length();
+    }
+
+    // Tamanho do JSON, para log
+    public int size() {
+        return jsonLine.length - 1;
+    }
+
+    // Linha JSON com o campo de id (quando houver) como primeiro campo do objeto
+    public ByteBuffer[] jsonLine(String idField, Object idValue) {
+        if (idValue == null) {
+            return new ByteBuffer[]{ByteBuffer.wrap(jsonLine).asReadOnlyBuffer()};
+        }
+        return new ByteBuffer[]{
+                ByteBuffer.wrap(jsonIdPrefix(idField, idValue)),
+                ByteBuffer.wrap(jsonLine, 1, jsonLine.length - 1).asReadOnlyBuffer()
+        };
+    }
+
+    // Mesmo formato de FrameCodec.encode, com o campo de id (quando houver) na frente
+    public ByteBuffer[] frame(String idField, Object idValue, boolean binary, int compressionThreshold) {
+        byte[] head;
+        int headLength;
+        byte[] body;
+        int bodyOffset;
+        int bodyLength;
+        byte flags;
+        if (binary) {
+            BinaryCodec.Writer writer = new BinaryCodec.Writer(32, FrameCodec.HEADER_SIZE);
+            writer.writeByte(BinaryCodec.TAG_OBJECT);
+            writer.writeVarLong(entryCount + (idValue != null ? 1 : 0));
+            if (idValue != null) {
+                writer.writeString(idField);
+                writer.writeValue(idValue);
+            }
+            head = writer.bytes;
+            headLength = writer.size;
+            body = binaryEntries;
+            bodyOffset = 0;
+            bodyLength = binaryEntries.length;
+            flags = FrameCodec.FLAG_BINARY;
+        } else {
+            byte[] prefix = idValue != null ? jsonIdPrefix(idField, idValue) : new byte[0];
+            head = new byte[FrameCodec.HEADER_SIZE + prefix.length];
+            System.arraycopy(prefix, 0, head, FrameCodec.HEADER_SIZE, prefix.length);
+            headLength = head.length;
+            body = jsonLine;
+            // Com o prefixo, o '{' do corpo já foi escrito; o '\n' final nunca vai no frame
+            bodyOffset = idValue != null ? 1 : 0;
+            bodyLength = jsonLine.length - 1 - bodyOffset;
+            flags = 0;
+        }
+
+        int payloadLength = headLength - FrameCodec.HEADER_SIZE + bodyLength;
+        if (compressionThreshold >= 0 && payloadLength >= compressionThreshold) {
+            byte[] frame = new byte[FrameCodec.HEADER_SIZE + payloadLength];
+            System.arraycopy(head, 0, frame, 0, headLength);
+            System.arraycopy(body, bodyOffset, frame, headLength, bodyLength);
+            return new ByteBuffer[]{FrameCodec.finish(frame, payloadLength, flags, compressionThreshold)};
+        }
+        FrameCodec.writeHeader(head, payloadLength, flags);
+        return new ByteBuffer[]{
+                ByteBuffer.wrap(head, 0, headLength),
+                ByteBuffer.wrap(body, bodyOffset, bodyLength).asReadOnlyBuffer()
+        };
+    }
+
+    // Serializa direto em UTF-8 num array que cresce; para respostas grandes é bem mais rápido que
+    // JSONObject.toString() seguido de getBytes(). Mesmo JSON, só sem os escapes opcionais do org.json.
+    private static final class JsonWriter {
+        byte[] bytes = new byte[8192];
+        int size;
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            bytes[size++] = (byte) b;
+        }
+
+        private void writeAscii(String s) {
+            ensure(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                bytes[size++] = (byte) s.charAt(i);
+            }
+        }
+
+        void writeValue(Object value) {
+            if (value == null || value == JSONObject.NULL) {
+                writeAscii("null");
+            } else if (value instanceof String s) {
+                writeString(s);
+            } else if (value instanceof Boolean || value instanceof Number) {
+                writeAscii(JSONObject.valueToString(value));
+            } else if (value instanceof JSONObject object) {
+                writeByte('{');
+                Iterator<String> keys = object.keys();
+                boolean first = true;
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    if (!first) {
+                        writeByte(',');
+                    }
+                    first = false;
+                    writeString(key);
+                    writeByte(':');
+                    writeValue(object.opt(key));
+                }
+                writeByte('}');
+            } else if (value instanceof JSONArray array) {
+                writeByte('[');
+                for (int i = 0; i < array.length(); i++) {
+                    if (i > 0) {
+                        writeByte(',');
+                    }
+                    writeValue(array.opt(i));
+                }
+                writeByte(']');
+            } else {
+                writeString(value.toString());
+            }
+        }
+
+        private void writeString(String s) {
+            ensure(JsonText.maxEncodedLength(s));
+            size = JsonText.writeString(s, bytes, size);
+        }
+    }
+
+    private static byte[] jsonIdPrefix(String idField, Object idValue) {
+        return ("{" + JSONObject.quote(idField) + ":" + JSONObject.valueToString(idValue) + ",")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,104 @@
+package protocol;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryCodecTest {
+
+    private static JSONObject sample() {
+        JSONObject movie = new JSONObject();
+        movie.put("id", "42");
+        movie.put("titulo", "Ação \"entre aspas\" 😀");
+        movie.put("genero", new JSONArray().put("Drama").put("Comédia"));
+        JSONObject message = new JSONObject();
+        message.put("status", "200");
+        message.put("inteiro", 7);
+        message.put("negativo", -123456789012L);
+        message.put("decimal", 4.5);
+        message.put("verdadeiro", true);
+        message.put("falso", false);
+        message.put("nulo", JSONObject.NULL);
+        message.put("filme", movie);
+        message.put("vazio", new JSONArray());
+        return message;
+    }
+
+    @Test
+    void roundTripKeepsEveryValueType() {
+        JSONObject original = sample();
+        byte[] encoded = BinaryCodec.encode(original);
+        JSONObject decoded = BinaryCodec.decode(encoded, 0, encoded.length);
+        assertTrue(original.similar(decoded), decoded::toString);
+        assertEquals(-123456789012L, decoded.getLong("negativo"));
+    }
+
+    @Test
+    void decodesFromAnOffset() {
+        byte[] encoded = BinaryCodec.encode(sample());
+        byte[] padded = new byte[encoded.length + 10];
+        System.arraycopy(encoded, 0, padded, 3, encoded.length);
+        assertTrue(sample().similar(BinaryCodec.decode(padded, 3, encoded.length)));
+    }
+
+    @Test
+    void rejectsTruncatedMessage() {
+        byte[] encoded = BinaryCodec.encode(sample());
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decode(encoded, 0, encoded.length - 1));
+    }
+
+    @Test
+    void rejectsTrailingBytes() {
+        byte[] encoded = BinaryCodec.encode(sample());
+        byte[] longer = new byte[encoded.length + 1];
+        System.arraycopy(encoded, 0, longer, 0, encoded.length);
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decode(longer, 0, longer.length));
+    }
+
+    @Test
+    void rejectsTopLevelValueThatIsNotAnObject() {
+        byte[] array = {BinaryCodec.TAG_ARRAY, 0};
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decode(array, 0, array.length));
+    }
+
+    @Test
+    void rejectsDeclaredLengthBeyondTheMessage() {
+        // Objeto com uma chave de 100 bytes, mas só 1 byte disponível
+        byte[] bogus = {BinaryCodec.TAG_OBJECT, 1, 100, 'a'};
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decode(bogus, 0, bogus.length));
+    }
+
+    @Test
+    void acceptsNestingUpToTheLimit() {
+        byte[] nested = nestedArrays(BinaryCodec.MAX_DEPTH - 1);
+        JSONObject decoded = BinaryCodec.decode(nested, 0, nested.length);
+        assertEquals(1, decoded.length());
+    }
+
+    @Test
+    void rejectsDeepNestingWithoutOverflowingTheStack() {
+        byte[] nested = nestedArrays(100_000);
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decode(nested, 0, nested.length));
+    }
+
+    // {"a": [[[...null...]]]} com "arrays" níveis de array dentro do objeto
+    private static byte[] nestedArrays(int arrays) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(BinaryCodec.TAG_OBJECT);
+        out.write(1);
+        out.write(1);
+        out.write('a');
+        for (int i = 0; i < arrays; i++) {
+            out.write(BinaryCodec.TAG_ARRAY);
+            out.write(1);
+        }
+        out.write(BinaryCodec.TAG_NULL);
+        return out.toByteArray();
+    }
+}
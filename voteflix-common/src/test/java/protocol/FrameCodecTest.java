@@ -0,0 +1,105 @@
+package protocol;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameCodecTest {
+
+    private static final int MAX = 1024 * 1024;
+
+    private static JSONObject message(int synopsisLength) {
+        JSONObject message = new JSONObject();
+        message.put("operacao", "EDITAR_FILME");
+        message.put("id_requisicao", 9);
+        message.put("sinopse", "Uma história longa e repetitiva. ".repeat(synopsisLength / 32 + 1));
+        return message;
+    }
+
+    // Flags + payload, como o LineFramer entrega ao worker
+    private static byte[] withoutLength(ByteBuffer frame) {
+        byte[] bytes = new byte[frame.remaining()];
+        frame.duplicate().get(bytes);
+        assertEquals(bytes.length - FrameCodec.LENGTH_FIELD_SIZE, ByteBuffer.wrap(bytes).getInt());
+        return Arrays.copyOfRange(bytes, FrameCodec.LENGTH_FIELD_SIZE, bytes.length);
+    }
+
+    @Test
+    void roundTripInEveryEncoding() {
+        JSONObject original = message(4096);
+        for (boolean binary : new boolean[]{false, true}) {
+            for (int threshold : new int[]{-1, 0, 1024, 1_000_000}) {
+                byte[] frame = withoutLength(FrameCodec.encode(original, binary, threshold));
+                assertEquals(binary, (frame[0] & FrameCodec.FLAG_BINARY) != 0);
+                assertTrue(original.similar(FrameCodec.decode(frame, MAX)), "binary=" + binary + " threshold=" + threshold);
+            }
+        }
+    }
+
+    @Test
+    void compressesOnlyFromTheThresholdUp() {
+        JSONObject small = new JSONObject().put("status", "200");
+        assertEquals(0, withoutLength(FrameCodec.encode(small, false, 1024))[0] & FrameCodec.FLAG_DEFLATE);
+
+        byte[] large = withoutLength(FrameCodec.encode(message(8192), false, 1024));
+        assertEquals(FrameCodec.FLAG_DEFLATE, large[0] & FrameCodec.FLAG_DEFLATE);
+        assertTrue(large.length < message(8192).toString().length() / 4);
+    }
+
+    @Test
+    void keepsTheUncompressedFrameWhenDeflateDoesNotHelp() {
+        JSONObject tiny = new JSONObject().put("a", "b");
+        assertEquals(0, withoutLength(FrameCodec.encode(tiny, true, 0))[0] & FrameCodec.FLAG_DEFLATE);
+    }
+
+    @Test
+    void rejectsCompressedFrameLargerThanTheLimit() {
+        byte[] frame = withoutLength(FrameCodec.encode(message(64 * 1024), false, 0));
+        assertThrows(IllegalArgumentException.class, () -> FrameCodec.decode(frame, 16 * 1024));
+    }
+
+    @Test
+    void rejectsCompressedFrameWithWrongDeclaredLength() {
+        byte[] frame = withoutLength(FrameCodec.encode(message(8192), false, 0));
+        // Tamanho original declarado uma unidade menor que o real
+        int declared = ByteBuffer.wrap(frame, 1, 4).getInt();
+        ByteBuffer.wrap(frame, 1, 4).putInt(declared - 1);
+        assertThrows(IllegalArgumentException.class, () -> FrameCodec.decode(frame, MAX));
+    }
+
+    @Test
+    void rejectsTruncatedCompressedFrame() {
+        byte[] frame = {FrameCodec.FLAG_DEFLATE, 0, 0};
+        assertThrows(IllegalArgumentException.class, () -> FrameCodec.decode(frame, MAX));
+    }
+
+    @Test
+    void streamWriteAndReadRoundTrip() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FrameCodec.write(out, message(10), true, -1);
+        FrameCodec.write(out, message(20_000), false, 1024);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+
+        assertTrue(message(10).similar(FrameCodec.decode(FrameCodec.read(in, MAX), MAX)));
+        assertTrue(message(20_000).similar(FrameCodec.decode(FrameCodec.read(in, MAX), MAX)));
+        assertNull(FrameCodec.read(in, MAX));
+    }
+
+    @Test
+    void readRejectsInvalidLength() {
+        byte[] header = ByteBuffer.allocate(4).putInt(MAX + 1).array();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(header));
+        assertThrows(IOException.class, () -> FrameCodec.read(in, MAX));
+    }
+}
@@ -0,0 +1,47 @@
+package protocol;
+
+import org.json.JSONArray;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonTextTest {
+
+    private static String encode(String s) {
+        byte[] bytes = new byte[JsonText.maxEncodedLength(s) + 3];
+        int end = JsonText.writeString(s, bytes, 3);
+        assertTrue(end <= bytes.length);
+        return new String(bytes, 3, end - 3, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void escapesQuotesBackslashesAndControlCharacters() {
+        assertEquals("\"a\\\"b\\\\c\\n\\r\\t\\b\\f\\u0001\\u001f\"", encode("a\"b\\c\n\r\t\b\f\u0001\u001f"));
+    }
+
+    @Test
+    void writesNonAsciiAsUtf8() {
+        String text = "ação ü 漢字 😀";
+        assertEquals("\"" + text + "\"", encode(text));
+    }
+
+    @Test
+    void replacesUnpairedSurrogate() {
+        assertEquals("\"a?b\"", encode("a\uD800b"));
+    }
+
+    @Test
+    void worstCaseFitsTheReportedLength() {
+        String controls = "\u0001".repeat(50);
+        assertEquals(JsonText.maxEncodedLength(controls), encode(controls).length());
+    }
+
+    @Test
+    void parsesBackToTheSameString() {
+        String text = "linha1\nlinha2\t\"aspas\" \\ \u0000 é 😀";
+        assertEquals(text, new JSONArray("[" + encode(text) + "]").getString(0));
+    }
+}
@@ -0,0 +1,79 @@
+package protocol;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PreparedMessageTest {
+
+    private static final int MAX = 16 * 1024 * 1024;
+
+    private static JSONObject movieList() {
+        JSONArray movies = new JSONArray();
+        for (int i = 1; i <= 300; i++) {
+            movies.put(new JSONObject()
+                    .put("id", String.valueOf(i))
+                    .put("titulo", "Filme \"" + i + "\" ação")
+                    .put("genero", new JSONArray().put("Drama")));
+        }
+        return new JSONObject().put("status", "200").put("filmes", movies);
+    }
+
+    private static byte[] concat(ByteBuffer[] parts) {
+        int total = 0;
+        for (ByteBuffer part : parts) {
+            total += part.remaining();
+        }
+        ByteBuffer all = ByteBuffer.allocate(total);
+        for (ByteBuffer part : parts) {
+            all.put(part.duplicate());
+        }
+        return all.array();
+    }
+
+    @Test
+    void jsonLineCarriesTheRequestIdFirst() {
+        PreparedMessage prepared = new PreparedMessage(movieList());
+        String line = new String(concat(prepared.jsonLine("id_requisicao", 17)), StandardCharsets.UTF_8);
+
+        assertTrue(line.startsWith("{\"id_requisicao\":17,"));
+        assertTrue(line.endsWith("\n"));
+        JSONObject expected = movieList().put("id_requisicao", 17);
+        assertTrue(expected.similar(new JSONObject(line)));
+    }
+
+    @Test
+    void jsonLineWithoutIdIsTheMessage() {
+        PreparedMessage prepared = new PreparedMessage(movieList());
+        String line = new String(concat(prepared.jsonLine("id_requisicao", null)), StandardCharsets.UTF_8);
+        assertTrue(line.endsWith("}\n"));
+        assertTrue(movieList().similar(new JSONObject(line)));
+    }
+
+    @Test
+    void framesDecodeLikeFrameCodecInEveryEncoding() {
+        PreparedMessage prepared = new PreparedMessage(movieList());
+        for (boolean binary : new boolean[]{false, true}) {
+            for (int threshold : new int[]{-1, 1024}) {
+                for (Object id : new Object[]{null, 5}) {
+                    byte[] frame = concat(prepared.frame("id_requisicao", id, binary, threshold));
+                    assertEquals(frame.length - FrameCodec.LENGTH_FIELD_SIZE, ByteBuffer.wrap(frame).getInt());
+                    JSONObject decoded = FrameCodec.decode(Arrays.copyOfRange(frame, FrameCodec.LENGTH_FIELD_SIZE, frame.length), MAX);
+
+                    JSONObject expected = movieList();
+                    if (id != null) {
+                        expected.put("id_requisicao", id);
+                    }
+                    assertTrue(expected.similar(decoded), "binary=" + binary + " threshold=" + threshold + " id=" + id);
+                }
+            }
+        }
+    }
+}
@@ -11,7 +11,9 @@ import javafx.scene.control.TextField;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Text;
 import javafx.scene.text.TextFlow;
+import network.LogType;
 import network.Server;
+import network.ServerEventSink;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
@@ -21,19 +23,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
-public class ServerController {
-
-    public enum LogType {
-        INFO(Color.BLACK),
-        CONNECTION(Color.GREEN),
-        DISCONNECTION(Color.ORANGE),
-        ERROR(Color.RED),
-        REQUEST(Color.BLUE);
-
-        private final Color color;
-        LogType(Color color) { this.color = color; }
-        public Color getColor() { return color; }
-    }
+public class ServerController implements ServerEventSink {
 
     @FXML private TextField ipField;
     @FXML private TextField portField;
@@ -46,6 +36,8 @@ public class ServerController {
     private final ObservableList<String> activeUsers = FXCollections.observableArrayList();
     private final Set<String> userSet = Collections.synchronizedSet(new HashSet<>());
     private final DateTimeFormatter dtf = DateTimeFormatter.ofPattern("HH:mm:ss");
+    // Cada linha são dois nós (horário + mensagem); o log completo fica no arquivo
+    private static final int MAX_LOG_LINES = 1000;
 
     @FXML
     private void initialize() {
@@ -80,27 +72,42 @@ public class ServerController {
         }
     }
 
+    // O drain pode levar até o prazo configurado, então roda fora da thread do JavaFX
     private void stopServer() {
         if (server != null) {
-            server.stop();
-            if (serverThread != null && serverThread.isAlive()) {
-                serverThread.interrupt();
-            }
+            server.shutdown(server.getConfig().getShutdownTimeoutMillis());
+        } else {
+            DatabaseConnection.closeConnection();
         }
-        log("Servidor sendo desligado...", LogType.INFO);
     }
 
+    private static Color colorOf(LogType type) {
+        return switch (type) {
+            case CONNECTION -> Color.GREEN;
+            case DISCONNECTION -> Color.ORANGE;
+            case ERROR -> Color.RED;
+            case REQUEST -> Color.BLUE;
+            default -> Color.BLACK;
+        };
+    }
+
+    @Override
     public void log(String message, LogType type) {
         Platform.runLater(() -> {
             String timestamp = dtf.format(LocalDateTime.now());
             Text time = new Text("[" + timestamp + "] ");
             time.setFill(Color.GRAY);
             Text msg = new Text(message + "\n");
-            msg.setFill(type.getColor());
+            msg.setFill(colorOf(type));
             logFlow.getChildren().addAll(time, msg);
+            int excess = logFlow.getChildren().size() - MAX_LOG_LINES * 2;
+            if (excess > 0) {
+                logFlow.getChildren().remove(0, excess);
+            }
         });
     }
 
+    @Override
     public void updateActiveUsers(String username, boolean isActive) {
         Platform.runLater(() -> {
             if (isActive) {
@@ -116,9 +123,11 @@ public class ServerController {
     }
 
     public void shutdown() {
-        stopServer();
-        DatabaseConnection.closeConnection();
-        Platform.exit();
-        System.exit(0);
+        Thread shutdownThread = new Thread(() -> {
+            stopServer();
+            Platform.exit();
+            System.exit(0);
+        }, "voteflix-shutdown");
+        shutdownThread.start();
     }
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package dao;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Versão do catálogo de filmes: muda a cada alteração que aparece na listagem (cadastro, edição e
+// exclusão de filmes, e qualquer mudança de nota). Incrementada depois do commit, então quem leu
+// a versão antes de consultar o banco nunca guarda dados antigos com uma versão nova.
+// Cada filme alterado guarda a versão da sua última mudança, para caches por filme
+// (filme + reviews) invalidarem só o que mudou.
+public final class CatalogVersion {
+
+    private static final AtomicLong VERSION = new AtomicLong();
+    private static final Map<Integer, Long> MOVIE_VERSIONS = new ConcurrentHashMap<>();
+
+    private CatalogVersion() {
+    }
+
+    public static long current() {
+        return VERSION.get();
+    }
+
+    // 0 para filmes que não mudaram desde que o servidor subiu
+    public static long ofMovie(int movieId) {
+        return MOVIE_VERSIONS.getOrDefault(movieId, 0L);
+    }
+
+    static void movieChanged(int movieId) {
+        long version = VERSION.incrementAndGet();
+        // max: duas escritas simultâneas no mesmo filme nunca fazem a versão dele voltar
+        MOVIE_VERSIONS.merge(movieId, version, Math::max);
+    }
+}
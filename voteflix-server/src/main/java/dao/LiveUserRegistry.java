@@ -0,0 +1,85 @@
+package dao;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Bitmap dos ids de usuários existentes, para a checagem feita a cada requisição autenticada
+// não ir ao banco. Carregado ao iniciar o servidor e mantido pelo UserDAO (cadastro e exclusões).
+// Leituras sem lock; as escritas são raras e serializadas, e crescer o bitmap troca o array inteiro.
+final class LiveUserRegistry {
+
+    private static final ReentrantLock WRITE_LOCK = new ReentrantLock();
+    private static volatile AtomicLongArray words;
+
+    private LiveUserRegistry() {
+    }
+
+    // Enquanto não carregado, quem consulta deve ir ao banco
+    static boolean isLoaded() {
+        return words != null;
+    }
+
+    static boolean contains(int userId) {
+        AtomicLongArray current = words;
+        int index = userId >>> 6;
+        return userId >= 0 && index < current.length() && (current.get(index) & (1L << userId)) != 0;
+    }
+
+    static void replaceAll(int[] userIds) {
+        int max = 0;
+        for (int id : userIds) {
+            max = Math.max(max, id);
+        }
+        AtomicLongArray loaded = new AtomicLongArray((max >>> 6) + 1);
+        for (int id : userIds) {
+            setBit(loaded, id);
+        }
+        WRITE_LOCK.lock();
+        try {
+            words = loaded;
+        } finally {
+            WRITE_LOCK.unlock();
+        }
+    }
+
+    static void add(int userId) {
+        WRITE_LOCK.lock();
+        try {
+            AtomicLongArray current = words;
+            if (current == null || userId < 0) {
+                return;
+            }
+            int index = userId >>> 6;
+            if (index >= current.length()) {
+                AtomicLongArray grown = new AtomicLongArray(Math.max(index + 1, current.length() * 2));
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                current = grown;
+            }
+            setBit(current, userId);
+            words = current;
+        } finally {
+            WRITE_LOCK.unlock();
+        }
+    }
+
+    static void remove(int userId) {
+        WRITE_LOCK.lock();
+        try {
+            AtomicLongArray current = words;
+            int index = userId >>> 6;
+            if (current != null && index < current.length()) {
+                long bit = 1L << userId;
+                current.getAndUpdate(index, word -> word & ~bit);
+            }
+        } finally {
+            WRITE_LOCK.unlock();
+        }
+    }
+
+    private static void setBit(AtomicLongArray target, int userId) {
+        long bit = 1L << userId;
+        target.getAndUpdate(userId >>> 6, word -> word | bit);
+    }
+}
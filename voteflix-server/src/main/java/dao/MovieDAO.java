@@ -2,43 +2,204 @@ package dao;
 
 import database.DatabaseConnection;
 import model.Movie;
+import search.MovieSearchIndex;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public class MovieDAO {
 
-    public void createMovie(Movie movie) throws SQLException {
+    // Atualizado junto com o banco a cada cadastro, edição e exclusão, depois do commit
+    private final MovieSearchIndex searchIndex;
+
+    public MovieDAO(MovieSearchIndex searchIndex) {
+        this.searchIndex = searchIndex;
+    }
+
+    // Retorna o id gerado; os gêneros também vão para filme_generos, usada nos filtros
+    public int createMovie(Movie movie) throws SQLException {
         String sql = "INSERT INTO filmes(titulo, diretor, ano, generos, sinopse) VALUES(?, ?, ?, ?, ?)";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, movie.getTitulo());
-            pstmt.setString(2, movie.getDiretor());
-            pstmt.setString(3, movie.getAno());
-            pstmt.setString(4, String.join(",", movie.getGeneros()));
-            pstmt.setString(5, movie.getSinopse());
-            pstmt.executeUpdate();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, movie.getTitulo());
+                pstmt.setString(2, movie.getDiretor());
+                pstmt.setString(3, movie.getAno());
+                pstmt.setString(4, String.join(",", movie.getGeneros()));
+                pstmt.setString(5, movie.getSinopse());
+                pstmt.executeUpdate();
+                try (Statement stmt = conn.createStatement();
+                     ResultSet keys = stmt.executeQuery("SELECT last_insert_rowid()")) {
+                    if (!keys.next()) {
+                        throw new SQLException("Falha ao obter o id do filme criado.");
+                    }
+                    movie.setId(keys.getInt(1));
+                }
+                insertGenres(conn, movie.getId(), movie.getGeneros());
+                conn.commit();
+                CatalogVersion.movieChanged(movie.getId());
+                searchIndex.index(movie);
+                return movie.getId();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         }
     }
 
     public List<Movie> listMovies() throws SQLException {
+        return listMovies(new MovieQuery(), 0);
+    }
+
+    // limit <= 0 traz todos. Com cursor na consulta, começa depois do último filme entregue (keyset)
+    // em vez de usar OFFSET, então o custo depende do tamanho da página e não da posição.
+    public List<Movie> listMovies(MovieQuery query, int limit) throws SQLException {
         List<Movie> movies = new ArrayList<>();
-        String sql = "SELECT * FROM filmes";
+        forEachMovie(query, limit, movies::add);
+        return movies;
+    }
+
+    // Percorre o resultado linha a linha, sem montar a lista inteira em memória
+    public void forEachMovie(MovieQuery query, Consumer<Movie> consumer) throws SQLException {
+        forEachMovie(query, 0, consumer);
+    }
+
+    private void forEachMovie(MovieQuery query, int limit, Consumer<Movie> consumer) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT * FROM filmes WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        appendFilters(query, sql, params);
+
+        String key = query.getSortKey().expression;
+        String direction = query.isDescending() ? " DESC" : " ASC";
+        if (query.hasCursor()) {
+            String comparison = query.isDescending() ? " < " : " > ";
+            if (query.getSortKey() == MovieQuery.SortKey.ID) {
+                sql.append(" AND id").append(comparison).append("?");
+            } else {
+                // Equivale a (chave, id) > (?, ?), mas escrito assim o SQLite busca direto no índice da chave
+                // em vez de percorrê-lo desde o início
+                String inclusive = query.isDescending() ? " <= " : " >= ";
+                sql.append(" AND ").append(key).append(inclusive).append("?")
+                        .append(" AND (").append(key).append(comparison).append("? OR id").append(comparison).append("?)");
+                params.add(query.getAfterValue());
+                params.add(query.getAfterValue());
+            }
+            params.add(query.getAfterId());
+        }
+        sql.append(" ORDER BY ");
+        if (query.getSortKey() != MovieQuery.SortKey.ID) {
+            sql.append(key).append(direction).append(", ");
+        }
+        sql.append("id").append(direction);
+        if (limit > 0) {
+            sql.append(" LIMIT ?");
+            params.add(limit);
+        }
+
         try (Connection conn = DatabaseConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             PreparedStatement pstmt = prepare(conn, sql, params);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                consumer.accept(mapMovie(rs));
+            }
+        }
+    }
+
+    // Total com os mesmos filtros, sem considerar o cursor
+    public int countMovies(MovieQuery query) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM filmes WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        appendFilters(query, sql, params);
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = prepare(conn, sql, params);
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
 
+    // Cada condição usa um índice: filme_generos(genero, id_filme) para gêneros e os índices de filmes
+    // para ano (pela expressão CAST), nota, quantidade de avaliações e diretor (sem diferenciar maiúsculas)
+    private void appendFilters(MovieQuery query, StringBuilder sql, List<Object> params) {
+        if (!query.getGenres().isEmpty()) {
+            sql.append(" AND id IN (SELECT id_filme FROM filme_generos WHERE genero IN (");
+            sql.append(String.join(", ", Collections.nCopies(query.getGenres().size(), "?")));
+            sql.append(")");
+            params.addAll(query.getGenres());
+            if (query.isMatchAllGenres() && query.getGenres().size() > 1) {
+                sql.append(" GROUP BY id_filme HAVING COUNT(*) = ?");
+                params.add(query.getGenres().size());
+            }
+            sql.append(")");
+        }
+        if (query.getMinYear() != null) {
+            sql.append(" AND CAST(ano AS INTEGER) >= ?");
+            params.add(query.getMinYear());
+        }
+        if (query.getMaxYear() != null) {
+            sql.append(" AND CAST(ano AS INTEGER) <= ?");
+            params.add(query.getMaxYear());
+        }
+        if (query.getMinRating() != null) {
+            sql.append(" AND nota >= ?");
+            params.add(query.getMinRating());
+        }
+        if (query.getMinReviews() != null) {
+            sql.append(" AND qtd_avaliacoes >= ?");
+            params.add(query.getMinReviews());
+        }
+        if (query.getDirector() != null) {
+            sql.append(" AND diretor = ? COLLATE NOCASE");
+            params.add(query.getDirector());
+        }
+    }
+
+    private PreparedStatement prepare(Connection conn, CharSequence sql, List<Object> params) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(sql.toString());
+        for (int i = 0; i < params.size(); i++) {
+            pstmt.setObject(i + 1, params.get(i));
+        }
+        return pstmt;
+    }
+
+    private Movie mapMovie(ResultSet rs) throws SQLException {
+        Movie movie = new Movie();
+        movie.setId(rs.getInt("id"));
+        movie.setTitulo(rs.getString("titulo"));
+        movie.setDiretor(rs.getString("diretor"));
+        movie.setAno(rs.getString("ano"));
+        movie.setGeneros(Arrays.asList(rs.getString("generos").split(",")));
+        movie.setSinopse(rs.getString("sinopse"));
+        movie.setNota(rs.getDouble("nota"));
+        movie.setQtdAvaliacoes(rs.getInt("qtd_avaliacoes"));
+        return movie;
+    }
+
+    // Filmes na ordem dos ids recebidos (ex.: ranking da busca); ids inexistentes são ignorados
+    public List<Movie> findMoviesByIds(List<Integer> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String sql = "SELECT * FROM filmes WHERE id IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+        Map<Integer, Movie> byId = new HashMap<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = prepare(conn, sql, new ArrayList<>(ids));
+             ResultSet rs = pstmt.executeQuery()) {
             while (rs.next()) {
-                Movie movie = new Movie();
-                movie.setId(rs.getInt("id"));
-                movie.setTitulo(rs.getString("titulo"));
-                movie.setDiretor(rs.getString("diretor"));
-                movie.setAno(rs.getString("ano"));
-                movie.setGeneros(Arrays.asList(rs.getString("generos").split(",")));
-                movie.setSinopse(rs.getString("sinopse"));
-                movie.setNota(rs.getDouble("nota"));
-                movie.setQtdAvaliacoes(rs.getInt("qtd_avaliacoes"));
+                Movie movie = mapMovie(rs);
+                byId.put(movie.getId(), movie);
+            }
+        }
+        List<Movie> movies = new ArrayList<>(byId.size());
+        for (int id : ids) {
+            Movie movie = byId.get(id);
+            if (movie != null) {
                 movies.add(movie);
             }
         }
@@ -52,16 +213,7 @@ public class MovieDAO {
             pstmt.setInt(1, id);
             ResultSet rs = pstmt.executeQuery();
             if (rs.next()) {
-                Movie movie = new Movie();
-                movie.setId(rs.getInt("id"));
-                movie.setTitulo(rs.getString("titulo"));
-                movie.setDiretor(rs.getString("diretor"));
-                movie.setAno(rs.getString("ano"));
-                movie.setGeneros(Arrays.asList(rs.getString("generos").split(",")));
-                movie.setSinopse(rs.getString("sinopse"));
-                movie.setNota(rs.getDouble("nota"));
-                movie.setQtdAvaliacoes(rs.getInt("qtd_avaliacoes"));
-                return movie;
+                return mapMovie(rs);
             }
         }
         return null;
@@ -70,24 +222,60 @@ public class MovieDAO {
 
     public boolean updateMovie(Movie movie) throws SQLException {
         String sql = "UPDATE filmes SET titulo = ?, diretor = ?, ano = ?, generos = ?, sinopse = ? WHERE id = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, movie.getTitulo());
-            pstmt.setString(2, movie.getDiretor());
-            pstmt.setString(3, movie.getAno());
-            pstmt.setString(4, String.join(",", movie.getGeneros()));
-            pstmt.setString(5, movie.getSinopse());
-            pstmt.setInt(6, movie.getId());
-            return pstmt.executeUpdate() > 0;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql);
+                 PreparedStatement deleteGenres = conn.prepareStatement("DELETE FROM filme_generos WHERE id_filme = ?")) {
+                pstmt.setString(1, movie.getTitulo());
+                pstmt.setString(2, movie.getDiretor());
+                pstmt.setString(3, movie.getAno());
+                pstmt.setString(4, String.join(",", movie.getGeneros()));
+                pstmt.setString(5, movie.getSinopse());
+                pstmt.setInt(6, movie.getId());
+                if (pstmt.executeUpdate() == 0) {
+                    conn.rollback();
+                    return false;
+                }
+                deleteGenres.setInt(1, movie.getId());
+                deleteGenres.executeUpdate();
+                insertGenres(conn, movie.getId(), movie.getGeneros());
+                conn.commit();
+                CatalogVersion.movieChanged(movie.getId());
+                searchIndex.index(movie);
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         }
     }
 
+    // As linhas de filme_generos saem junto pelo ON DELETE CASCADE
     public boolean deleteMovie(int id) throws SQLException {
         String sql = "DELETE FROM filmes WHERE id = ?";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, id);
-            return pstmt.executeUpdate() > 0;
+            if (pstmt.executeUpdate() == 0) {
+                return false;
+            }
+            CatalogVersion.movieChanged(id);
+            searchIndex.remove(id);
+            return true;
+        }
+    }
+
+    private void insertGenres(Connection conn, int movieId, List<String> genres) throws SQLException {
+        String sql = "INSERT OR IGNORE INTO filme_generos(genero, id_filme) VALUES(?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (String genre : genres) {
+                pstmt.setString(1, genre.trim());
+                pstmt.setInt(2, movieId);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
         }
     }
-}
\ No newline at end of file
+}
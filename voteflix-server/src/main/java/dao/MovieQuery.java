@@ -0,0 +1,181 @@
+package dao;
+
+import model.Movie;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+// Filtros, ordenação e posição (cursor) de uma listagem de filmes. Cada chave de ordenação
+// tem um índice (chave, id) no banco, e o id desempata para a paginação por chave ser estável.
+public class MovieQuery {
+
+    public enum SortKey {
+        ID("id", false),
+        NOTA("nota", true),
+        AVALIACOES("qtd_avaliacoes", true),
+        ANO("CAST(ano AS INTEGER)", true),
+        TITULO("titulo COLLATE NOCASE", false);
+
+        final String expression;
+        final boolean descendingByDefault;
+
+        SortKey(String expression, boolean descendingByDefault) {
+            this.expression = expression;
+            this.descendingByDefault = descendingByDefault;
+        }
+
+        public boolean isDescendingByDefault() {
+            return descendingByDefault;
+        }
+
+        Object valueOf(Movie movie) {
+            return switch (this) {
+                case ID -> movie.getId();
+                case NOTA -> movie.getNota();
+                case AVALIACOES -> movie.getQtdAvaliacoes();
+                case ANO -> Integer.parseInt(movie.getAno());
+                case TITULO -> movie.getTitulo();
+            };
+        }
+
+        Object parse(String value) {
+            return switch (this) {
+                case ID, AVALIACOES, ANO -> Integer.parseInt(value);
+                case NOTA -> Double.parseDouble(value);
+                case TITULO -> value;
+            };
+        }
+    }
+
+    private final Set<String> genres = new LinkedHashSet<>();
+    private boolean matchAllGenres;
+    private Integer minYear;
+    private Integer maxYear;
+    private Double minRating;
+    private Integer minReviews;
+    private String director;
+    private SortKey sortKey = SortKey.ID;
+    private boolean descending;
+
+    // Posição do último filme já entregue; null na primeira página
+    private Object afterValue;
+    private int afterId;
+
+    public void addGenre(String genre) {
+        genres.add(genre);
+    }
+
+    public Set<String> getGenres() {
+        return genres;
+    }
+
+    public boolean isMatchAllGenres() {
+        return matchAllGenres;
+    }
+
+    public void setMatchAllGenres(boolean matchAllGenres) {
+        this.matchAllGenres = matchAllGenres;
+    }
+
+    public Integer getMinYear() {
+        return minYear;
+    }
+
+    public void setMinYear(Integer minYear) {
+        this.minYear = minYear;
+    }
+
+    public Integer getMaxYear() {
+        return maxYear;
+    }
+
+    public void setMaxYear(Integer maxYear) {
+        this.maxYear = maxYear;
+    }
+
+    public Double getMinRating() {
+        return minRating;
+    }
+
+    public void setMinRating(Double minRating) {
+        this.minRating = minRating;
+    }
+
+    public Integer getMinReviews() {
+        return minReviews;
+    }
+
+    public void setMinReviews(Integer minReviews) {
+        this.minReviews = minReviews;
+    }
+
+    public String getDirector() {
+        return director;
+    }
+
+    public void setDirector(String director) {
+        this.director = director;
+    }
+
+    public SortKey getSortKey() {
+        return sortKey;
+    }
+
+    public void setSortKey(SortKey sortKey) {
+        this.sortKey = sortKey;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public void setDescending(boolean descending) {
+        this.descending = descending;
+    }
+
+    // Sem filtros, na ordem padrão (id crescente) e desde o início: o catálogo inteiro
+    public boolean isUnfiltered() {
+        return genres.isEmpty() && minYear == null && maxYear == null && minRating == null && minReviews == null
+                && director == null && sortKey == SortKey.ID && !descending && !hasCursor();
+    }
+
+    boolean hasCursor() {
+        return afterValue != null;
+    }
+
+    Object getAfterValue() {
+        return afterValue;
+    }
+
+    int getAfterId() {
+        return afterId;
+    }
+
+    // O cursor é opaco para o cliente: chave de ordenação, id e valor do último filme, em Base64.
+    // Um cursor de outra ordenação não serve para esta consulta.
+    public String cursorAfter(Movie last) {
+        String raw = orderTag() + "|" + last.getId() + "|" + sortKey.valueOf(last);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void startAfter(String cursor) {
+        String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 3);
+        if (parts.length != 3 || !orderTag().equals(parts[0])) {
+            throw new IllegalArgumentException("Cursor inválido para esta ordenação.");
+        }
+        afterId = Integer.parseInt(parts[1]);
+        afterValue = sortKey.parse(parts[2]);
+    }
+
+    // Mesma posição de startAfter(cursorAfter(last)), sem passar pelo texto do cursor
+    public void continueAfter(Movie last) {
+        afterId = last.getId();
+        afterValue = sortKey.valueOf(last);
+    }
+
+    private String orderTag() {
+        return sortKey.name() + (descending ? "-" : "+");
+    }
+}
@@ -50,13 +50,14 @@ public class ReviewDAO {
             updateMovieStatsIncremental(conn, review.getIdFilme(), review.getNota(), 0, "ADD");
 
             conn.commit();
+            CatalogVersion.movieChanged(review.getIdFilme());
 
         } catch (SQLException e) {
             if (conn != null) try { conn.rollback(); } catch (SQLException ex) { System.err.println("Erro rollback create: " + ex.getMessage()); }
             throw e;
         } finally {
             closeStatement(pstmt, "createReview");
-            setAutoCommitTrue(conn, "createReview");
+            releaseConnection(conn, "createReview");
         }
     }
 
@@ -103,6 +104,8 @@ public class ReviewDAO {
                     updateMovieStatsIncremental(conn, review.getIdFilme(), review.getNota(), oldRating, "UPDATE");
                 }
                 conn.commit();
+                // Mesmo sem mudar a nota, título e descrição da review mudaram na página do filme
+                CatalogVersion.movieChanged(review.getIdFilme());
             } else {
                 conn.rollback();
             }
@@ -114,7 +117,7 @@ public class ReviewDAO {
             closeResultSet(rs, "updateReview");
             closeStatement(pstmtSelect, "updateReview-Select");
             closeStatement(pstmtUpdate, "updateReview-Update");
-            setAutoCommitTrue(conn, "updateReview");
+            releaseConnection(conn, "updateReview");
         }
         return success;
     }
@@ -173,6 +176,7 @@ public class ReviewDAO {
             if (success) {
                 updateMovieStatsIncremental(conn, movieId, 0, oldRating, "DELETE");
                 conn.commit();
+                CatalogVersion.movieChanged(movieId);
             } else {
                 conn.rollback();
             }
@@ -184,7 +188,7 @@ public class ReviewDAO {
             closeResultSet(rs, "deleteTransaction");
             closeStatement(pstmtSelect, "deleteTransaction-Select");
             closeStatement(pstmtDelete, "deleteTransaction-Delete");
-            setAutoCommitTrue(conn, "deleteTransaction");
+            releaseConnection(conn, "deleteTransaction");
         }
         return success;
     }
@@ -331,11 +335,14 @@ public class ReviewDAO {
         }
     }
 
-    private void setAutoCommitTrue(Connection conn, String methodName) {
+    private void releaseConnection(Connection conn, String methodName) {
         if (conn != null) {
             try { conn.setAutoCommit(true); } catch (SQLException e) {
                 System.err.println("Erro restaurar autoCommit " + methodName + ": " + e.getMessage());
             }
+            try { conn.close(); } catch (SQLException e) {
+                System.err.println("Erro devolver conexão " + methodName + ": " + e.getMessage());
+            }
         }
     }
 }
\ No newline at end of file
@@ -26,9 +26,38 @@ public class UserDAO {
             pstmt.setString(1, user.getNome());
             pstmt.setString(2, user.getSenha());
             pstmt.executeUpdate();
+            try (Statement stmt = conn.createStatement();
+                 ResultSet keys = stmt.executeQuery("SELECT last_insert_rowid()")) {
+                if (keys.next()) {
+                    user.setId(keys.getInt(1));
+                    LiveUserRegistry.add(user.getId());
+                }
+            }
         }
     }
 
+    // Carrega os ids existentes na memória; a partir daí exists() não consulta mais o banco
+    public int loadLiveUsers() throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id FROM usuarios")) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        LiveUserRegistry.replaceAll(ids.stream().mapToInt(Integer::intValue).toArray());
+        return ids.size();
+    }
+
+    // Usada a cada requisição autenticada para recusar tokens de usuários já excluídos
+    public boolean exists(int userId) throws SQLException {
+        if (LiveUserRegistry.isLoaded()) {
+            return LiveUserRegistry.contains(userId);
+        }
+        return findById(userId) != null;
+    }
+
     public User findByUsername(String username) throws SQLException {
         String sql = "SELECT * FROM usuarios WHERE nome = ?";
         try (Connection conn = DatabaseConnection.getConnection();
@@ -137,6 +166,11 @@ public class UserDAO {
             }
 
             conn.commit();
+            LiveUserRegistry.remove(userId);
+            // As reviews do usuário saem em cascata e as notas desses filmes mudam
+            for (int movieId : movieIdsToUpdate) {
+                CatalogVersion.movieChanged(movieId);
+            }
 
             return true;
 
@@ -148,6 +182,7 @@ public class UserDAO {
             if (pstmtFindMovies != null) try { pstmtFindMovies.close(); } catch (SQLException ignored) { }
             if (pstmtDeleteUser != null) try { pstmtDeleteUser.close(); } catch (SQLException ignored) { }
             if (conn != null) try { conn.setAutoCommit(true); } catch (SQLException ignored) { }
+            if (conn != null) try { conn.close(); } catch (SQLException ignored) { }
         }
     }
 
@@ -1,44 +1,135 @@
 package database;
 
+import org.sqlite.SQLiteConfig;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class DatabaseConnection {
 
-    private static Connection connection = null;
-    private static final String DB_URL = "jdbc:sqlite:voteflix.db";
+    private static volatile String dbUrl = "jdbc:sqlite:voteflix.db";
+    private static volatile int poolSize = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    // Pool de conexões: cada worker usa a sua, e "close()" apenas devolve ao pool
+    private static final BlockingQueue<Connection> idleConnections = new LinkedBlockingQueue<>();
+    private static final List<Connection> allConnections = new ArrayList<>();
+
+    // Deve ser chamado antes da primeira conexão (ex.: pelo modo headless)
+    public static synchronized void configure(String dbPath, int size) {
+        if (!allConnections.isEmpty()) {
+            throw new IllegalStateException("O pool de conexões já está em uso.");
+        }
+        dbUrl = "jdbc:sqlite:" + dbPath;
+        poolSize = Math.max(1, size);
+    }
 
     public static Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
+        Connection physical = idleConnections.poll();
+        if (physical == null) {
+            physical = openIfBelowLimit();
+        }
+        if (physical == null) {
             try {
-                Class.forName("org.sqlite.JDBC");
-                connection = DriverManager.getConnection(DB_URL);
-                enableForeignKeySupport(connection);
-
-            } catch (ClassNotFoundException e) {
-                throw new SQLException("Driver do SQLite não encontrado.", e);
+                physical = idleConnections.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrompido aguardando conexão com o banco de dados.", e);
             }
         }
-        return connection;
+        return wrap(physical);
     }
 
-    private static void enableForeignKeySupport(Connection conn) throws SQLException {
-        if (conn != null) {
-            try (Statement stmt = conn.createStatement()) {
-                stmt.execute("PRAGMA foreign_keys = ON;");
-            }
+    private static synchronized Connection openIfBelowLimit() throws SQLException {
+        if (allConnections.size() >= poolSize) {
+            return null;
         }
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("Driver do SQLite não encontrado.", e);
+        }
+        Connection conn = DriverManager.getConnection(dbUrl, createConfig().toProperties());
+        allConnections.add(conn);
+        return conn;
     }
 
-    public static void closeConnection() {
+    // WAL permite leituras concorrentes; IMMEDIATE evita deadlock ao promover leitura para escrita nas transações
+    private static SQLiteConfig createConfig() {
+        SQLiteConfig config = new SQLiteConfig();
+        config.enforceForeignKeys(true);
+        config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        config.setBusyTimeout(5000);
+        config.setTransactionMode(SQLiteConfig.TransactionMode.IMMEDIATE);
+        return config;
+    }
+
+    private static Connection wrap(Connection physical) {
+        AtomicBoolean released = new AtomicBoolean(false);
+        return (Connection) Proxy.newProxyInstance(
+                DatabaseConnection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            if (released.compareAndSet(false, true)) {
+                                release(physical);
+                            }
+                            return null;
+                        case "isClosed":
+                            return released.get() || physical.isClosed();
+                        default:
+                            if (released.get()) {
+                                throw new SQLException("Conexão já devolvida ao pool.");
+                            }
+                            try {
+                                return method.invoke(physical, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                });
+    }
+
+    private static void release(Connection physical) {
         try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
+            if (physical.isClosed()) {
+                synchronized (DatabaseConnection.class) {
+                    allConnections.remove(physical);
+                }
+                return;
             }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            idleConnections.offer(physical);
         } catch (SQLException e) {
-            System.err.println("Erro ao fechar a conexão com o banco de dados: " + e.getMessage());
+            System.err.println("Erro ao devolver conexão ao pool: " + e.getMessage());
+            synchronized (DatabaseConnection.class) {
+                allConnections.remove(physical);
+            }
+        }
+    }
+
+    public static synchronized void closeConnection() {
+        idleConnections.clear();
+        for (Connection conn : allConnections) {
+            try {
+                if (!conn.isClosed()) {
+                    conn.close();
+                }
+            } catch (SQLException e) {
+                System.err.println("Erro ao fechar a conexão com o banco de dados: " + e.getMessage());
+            }
         }
+        allConnections.clear();
     }
-}
\ No newline at end of file
+}
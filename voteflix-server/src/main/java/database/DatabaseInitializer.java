@@ -1,6 +1,7 @@
 package database;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.ResultSet;
@@ -41,6 +42,24 @@ public class DatabaseInitializer {
                 + "UNIQUE(id_filme, id_usuario)"
                 + ");";
 
+        // Um registro por (gênero, filme) para filtrar por gênero pelo índice, sem LIKE na coluna "generos"
+        String createMovieGenresTableSql = "CREATE TABLE IF NOT EXISTS filme_generos ("
+                + "genero TEXT NOT NULL,"
+                + "id_filme INTEGER NOT NULL,"
+                + "PRIMARY KEY (genero, id_filme),"
+                + "FOREIGN KEY (id_filme) REFERENCES filmes(id) ON DELETE CASCADE"
+                + ") WITHOUT ROWID;";
+
+        // Índices (chave, id) para as ordenações e a paginação por chave da listagem de filmes
+        String[] createIndexesSql = {
+                "CREATE INDEX IF NOT EXISTS idx_filme_generos_filme ON filme_generos(id_filme);",
+                "CREATE INDEX IF NOT EXISTS idx_filmes_nota ON filmes(nota, id);",
+                "CREATE INDEX IF NOT EXISTS idx_filmes_avaliacoes ON filmes(qtd_avaliacoes, id);",
+                "CREATE INDEX IF NOT EXISTS idx_filmes_ano ON filmes(CAST(ano AS INTEGER), id);",
+                "CREATE INDEX IF NOT EXISTS idx_filmes_titulo ON filmes(titulo COLLATE NOCASE, id);",
+                "CREATE INDEX IF NOT EXISTS idx_filmes_diretor ON filmes(diretor COLLATE NOCASE);"
+        };
+
         String createAdminUserSql = "INSERT OR IGNORE INTO usuarios (nome, senha) VALUES ('admin', 'admin');";
 
         try (Connection conn = DatabaseConnection.getConnection();
@@ -48,10 +67,15 @@ public class DatabaseInitializer {
             stmt.execute(createUserTableSql);
             stmt.execute(createMovieTableSql);
             stmt.execute(createReviewTableSql);
+            stmt.execute(createMovieGenresTableSql);
+            for (String sql : createIndexesSql) {
+                stmt.execute(sql);
+            }
 
             // Migração de dados para tabelas existentes
             checkAndAddColumnToReviews(stmt, "id_usuario", "INTEGER NOT NULL DEFAULT 0");
             checkAndAddColumnToReviews(stmt, "editado", "TEXT DEFAULT 'false'");
+            fillMovieGenres(conn);
 
             stmt.execute(createAdminUserSql);
 
@@ -60,6 +84,42 @@ public class DatabaseInitializer {
         }
     }
 
+    // Bancos anteriores à tabela filme_generos: preenche a partir da coluna "generos" dos filmes
+    private static void fillMovieGenres(Connection conn) {
+        String missingSql = "SELECT id, generos FROM filmes WHERE id NOT IN (SELECT id_filme FROM filme_generos)";
+        String insertSql = "INSERT OR IGNORE INTO filme_generos(genero, id_filme) VALUES(?, ?)";
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(missingSql);
+             PreparedStatement insert = conn.prepareStatement(insertSql)) {
+            int count = 0;
+            while (rs.next()) {
+                for (String genre : rs.getString("generos").split(",")) {
+                    insert.setString(1, genre.trim());
+                    insert.setInt(2, rs.getInt("id"));
+                    insert.addBatch();
+                }
+                count++;
+            }
+            if (count > 0) {
+                conn.setAutoCommit(false);
+                insert.executeBatch();
+                conn.commit();
+                conn.setAutoCommit(true);
+                System.out.println("Gêneros de " + count + " filme(s) copiados para 'filme_generos'.");
+            }
+        } catch (SQLException e) {
+            System.err.println("Erro ao preencher filme_generos: " + e.getMessage());
+            try {
+                if (!conn.getAutoCommit()) {
+                    conn.rollback();
+                    conn.setAutoCommit(true);
+                }
+            } catch (SQLException ex) {
+                System.err.println("Erro ao desfazer preenchimento de filme_generos: " + ex.getMessage());
+            }
+        }
+    }
+
     // Refatorado: Específico para tabela 'reviews' para evitar warning de parâmetro
     private static void checkAndAddColumnToReviews(Statement stmt, String columnName, String columnType) {
         String tableName = "reviews";
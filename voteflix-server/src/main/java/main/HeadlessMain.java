@@ -0,0 +1,49 @@
+package main;
+
+import database.DatabaseConnection;
+import database.DatabaseInitializer;
+import network.ConsoleEventSink;
+import network.Server;
+import network.ServerConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+// Inicia o servidor sem JavaFX. Uso:
+//   HeadlessMain [--config=servidor.properties] [--port=22222] [--dbPath=voteflix.db] [--chave=valor ...]
+// Argumentos da linha de comando sobrescrevem o arquivo; as chaves são as de ServerConfig.fromProperties.
+public class HeadlessMain {
+
+    public static void main(String[] args) throws IOException {
+        Properties props = new Properties();
+        Properties overrides = new Properties();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                System.err.println("Argumento inválido: " + arg + " (use --chave=valor)");
+                System.exit(2);
+            }
+            int eq = arg.indexOf('=');
+            overrides.setProperty(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+
+        String configFile = overrides.getProperty("config");
+        if (configFile != null) {
+            try (InputStream in = Files.newInputStream(Path.of(configFile))) {
+                props.load(in);
+            }
+        }
+        props.putAll(overrides);
+
+        ServerConfig config = ServerConfig.fromProperties(props);
+        DatabaseConnection.configure(config.getDbPath(), config.getDbPoolSize());
+        DatabaseInitializer.createTables();
+
+        Server server = new Server(config, new ConsoleEventSink());
+        Runtime.getRuntime().addShutdownHook(new Thread(
+                () -> server.shutdown(config.getShutdownTimeoutMillis()), "voteflix-shutdown"));
+        server.run();
+    }
+}
@@ -0,0 +1,297 @@
+package network;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+
+// Log assíncrono: quem loga só publica o evento num ring buffer lock-free.
+// Uma única thread de fundo formata, grava em arquivos rotativos e repassa à UI um feed limitado.
+public class AsyncLogger implements Runnable {
+
+    public enum Level { DEBUG, INFO, ERROR }
+
+    private static final class Event {
+        final long timestamp = System.currentTimeMillis();
+        final LogType type;
+        final String message;
+        final String client;
+        final Object payload;
+
+        Event(LogType type, String message, String client, Object payload) {
+            this.type = type;
+            this.message = message;
+            this.client = client;
+            this.payload = payload;
+        }
+    }
+
+    // Tokens e senhas nunca chegam ao arquivo nem à interface
+    private static final Pattern SECRET_PATTERN = Pattern.compile("\"(token|senha|nova_senha)\"\\s*:\\s*\"[^\"]*\"");
+    private static final DateTimeFormatter FILE_TIME =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    private static final String FILE_NAME = "voteflix-server.log";
+    private static final int MAX_BATCH = 512;
+    private static final long IDLE_PARK_NANOS = 2_000_000;
+
+    private final ServerEventSink ui;
+    private final ServerConfig config;
+
+    // Ring MPSC: produtores reservam a posição com CAS em "tail"; só o consumidor avança "head"
+    private final AtomicReferenceArray<Event> ring;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile boolean running = true;
+    private Thread consumer;
+
+    // Estado abaixo é usado apenas pela thread consumidora
+    private BufferedWriter writer;
+    private long currentFileBytes;
+    private long uiWindowStart;
+    private int uiLinesInWindow;
+    private long uiSuppressed;
+    private long droppedReported;
+
+    public AsyncLogger(ServerEventSink ui, ServerConfig config) {
+        this.ui = ui;
+        this.config = config;
+        int capacity = Integer.highestOneBit(Math.max(2, config.getLogRingCapacity() - 1)) << 1;
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    public void start() {
+        consumer = new Thread(this, "voteflix-logger");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    public void log(String message, LogType type) {
+        publish(new Event(type, message, null, null));
+    }
+
+    // A concatenação "<- De cliente: json" (e o toString() do payload) fica para a thread de fundo;
+    // objetos passados aqui não podem mais ser alterados por quem logou
+    public void logRequest(String direction, String client, Object payload) {
+        publish(new Event(LogType.REQUEST, direction, client, payload));
+    }
+
+    // Sorteio feito uma vez por requisição, para que requisição e resposta saiam juntas
+    public boolean shouldSample(String operacao) {
+        if (!isEnabled(LogType.REQUEST)) {
+            return false;
+        }
+        double rate = config.getLogSampleRate(operacao);
+        return rate >= 1.0 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    private boolean isEnabled(LogType type) {
+        Level level = levelOf(type);
+        return level.compareTo(config.getFileLogLevel()) >= 0 || level.compareTo(config.getUiLogLevel()) >= 0;
+    }
+
+    private void publish(Event event) {
+        if (!isEnabled(event.type)) {
+            return;
+        }
+        long seq;
+        do {
+            seq = tail.get();
+            if (seq - head >= ring.length()) {
+                // Ring cheio: descarta em vez de bloquear quem está atendendo requisições
+                dropped.increment();
+                return;
+            }
+        } while (!tail.compareAndSet(seq, seq + 1));
+        ring.set((int) (seq & mask), event);
+    }
+
+    @Override
+    public void run() {
+        openFile();
+        while (running || head < tail.get()) {
+            if (drainBatch() == 0) {
+                flushFile();
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        flushFile();
+        closeFile();
+    }
+
+    private int drainBatch() {
+        int count = 0;
+        while (count < MAX_BATCH) {
+            int index = (int) (head & mask);
+            Event event = ring.get(index);
+            if (event == null) {
+                break; // vazio, ou um produtor reservou a posição e ainda não publicou
+            }
+            ring.set(index, null);
+            head = head + 1;
+            handle(event);
+            count++;
+        }
+        return count;
+    }
+
+    private void handle(Event event) {
+        Level level = levelOf(event.type);
+        String text = format(event);
+        if (level.compareTo(config.getFileLogLevel()) >= 0) {
+            writeToFile(event, text);
+        }
+        if (level.compareTo(config.getUiLogLevel()) >= 0) {
+            forwardToUi(event, text, level);
+        }
+    }
+
+    private String format(Event event) {
+        if (event.client == null) {
+            return event.message;
+        }
+        // Mascara antes de truncar para não sobrar pedaço de token no fim da linha
+        String payload = SECRET_PATTERN.matcher(String.valueOf(event.payload)).replaceAll("\"$1\":\"***\"");
+        return event.message + " " + event.client + ": " + truncate(payload, config.getLogMaxPayloadLength());
+    }
+
+    private static String truncate(String text, int max) {
+        if (text == null || text.length() <= max) {
+            return text;
+        }
+        return text.substring(0, max) + "... (" + text.length() + " caracteres)";
+    }
+
+    private void forwardToUi(Event event, String text, Level level) {
+        if (event.timestamp - uiWindowStart >= 1000) {
+            reportSuppressed();
+            uiWindowStart = event.timestamp;
+            uiLinesInWindow = 0;
+        }
+        // Erros sempre aparecem; o resto respeita o limite de linhas por segundo
+        if (level != Level.ERROR && uiLinesInWindow >= config.getUiLogLinesPerSecond()) {
+            uiSuppressed++;
+            return;
+        }
+        uiLinesInWindow++;
+        ui.log(truncate(text, config.getUiLogMaxLineLength()), event.type);
+    }
+
+    private void reportSuppressed() {
+        long droppedNow = dropped.sum();
+        if (uiSuppressed > 0 || droppedNow > droppedReported) {
+            ui.log("(" + uiSuppressed + " mensagens omitidas na interface, "
+                    + (droppedNow - droppedReported) + " descartadas por excesso)", LogType.INFO);
+            uiSuppressed = 0;
+            droppedReported = droppedNow;
+        }
+    }
+
+    private static Level levelOf(LogType type) {
+        return switch (type) {
+            case ERROR -> Level.ERROR;
+            case REQUEST -> Level.DEBUG;
+            default -> Level.INFO;
+        };
+    }
+
+    private Path logFile() {
+        return Path.of(config.getLogDirectory(), FILE_NAME);
+    }
+
+    private void openFile() {
+        try {
+            Files.createDirectories(Path.of(config.getLogDirectory()));
+            Path file = logFile();
+            currentFileBytes = Files.exists(file) ? Files.size(file) : 0;
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            writer = null;
+            ui.log("Não foi possível abrir o arquivo de log: " + e.getMessage(), LogType.ERROR);
+        }
+    }
+
+    private void writeToFile(Event event, String text) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            String line = "[" + FILE_TIME.format(Instant.ofEpochMilli(event.timestamp)) + "] "
+                    + event.type + " " + text + System.lineSeparator();
+            writer.write(line);
+            currentFileBytes += line.length(); // aproximado: conta caracteres, não bytes UTF-8
+            if (currentFileBytes >= config.getLogMaxFileBytes()) {
+                rotate();
+            }
+        } catch (IOException e) {
+            closeFile();
+            ui.log("Erro ao gravar o arquivo de log: " + e.getMessage(), LogType.ERROR);
+        }
+    }
+
+    // voteflix-server.log -> .1 -> .2 ... -> .maxFiles (o mais antigo é sobrescrito)
+    private void rotate() throws IOException {
+        closeFile();
+        Path file = logFile();
+        for (int i = config.getLogMaxFiles() - 1; i >= 1; i--) {
+            Path source = Path.of(file + "." + i);
+            if (Files.exists(source)) {
+                Files.move(source, Path.of(file + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(file, Path.of(file + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        openFile();
+    }
+
+    private void flushFile() {
+        if (writer != null) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                closeFile();
+            }
+        }
+    }
+
+    private void closeFile() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException ignored) {
+            }
+            writer = null;
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    // Grava o que já foi publicado e encerra a thread de fundo
+    public void stop() {
+        running = false;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+            try {
+                consumer.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
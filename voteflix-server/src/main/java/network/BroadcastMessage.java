@@ -0,0 +1,45 @@
+package network;
+
+import org.json.JSONObject;
+import protocol.FrameCodec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Evento enviado sem pedido a várias conexões (inscritos ou Server.broadcast). Cada formato de fio é
+// codificado uma única vez, na primeira conexão que o usa; as demais recebem um duplicate() somente
+// leitura dos mesmos bytes, com posição própria, e a fila de escrita nunca altera o conteúdo.
+final class BroadcastMessage {
+
+    // [0] linha JSON; frames: [1] JSON, [2] JSON com compressão, [3] binário, [4] binário com compressão.
+    // O limite de compressão é o da configuração, igual em todas as conexões que negociaram deflate.
+    private final ByteBuffer[] encoded = new ByteBuffer[5];
+    private final JSONObject event;
+    private final String coalesceKey;
+
+    // coalesceKey: eventos com a mesma chave substituem um ao outro enquanto esperam um consumidor
+    // lento (o mais novo já traz o estado completo); null para eventos que não podem ser descartados
+    BroadcastMessage(JSONObject event, String coalesceKey) {
+        this.event = event;
+        this.coalesceKey = coalesceKey;
+    }
+
+    String coalesceKey() {
+        return coalesceKey;
+    }
+
+    ByteBuffer bufferFor(boolean framed, boolean binary, int compressionThreshold) {
+        int slot = !framed ? 0 : 1 + (binary ? 2 : 0) + (compressionThreshold >= 0 ? 1 : 0);
+        ByteBuffer shared;
+        synchronized (encoded) {
+            shared = encoded[slot];
+            if (shared == null) {
+                shared = (framed
+                        ? FrameCodec.encode(event, binary, compressionThreshold)
+                        : StandardCharsets.UTF_8.encode(event.toString() + "\n")).asReadOnlyBuffer();
+                encoded[slot] = shared;
+            }
+        }
+        return shared.duplicate();
+    }
+}
@@ -1,7 +1,8 @@
 package network;
 
-import controller.ServerController;
+import dao.CatalogVersion;
 import dao.MovieDAO;
+import dao.MovieQuery;
 import dao.UserDAO;
 import dao.ReviewDAO;
 import model.Movie;
@@ -10,9 +11,15 @@ import model.Review;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import protocol.FrameCodec;
+import protocol.PreparedMessage;
+import search.MovieSearchIndex;
 import util.JwtUtil;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
@@ -25,26 +32,88 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class ClientHandler {
     private final SocketChannel channel;
-    private final ServerController controller;
+    private final AsyncLogger logger;
     private final UserDAO userDAO;
     private final MovieDAO movieDAO;
     private final ReviewDAO reviewDAO;
     private final Server server;
-    private String username;
-    private boolean needsToClose = false;
-
-    private final ByteBuffer readBuffer = ByteBuffer.allocate(8192);
-    private final StringBuilder lineBuilder = new StringBuilder();
-    private final Queue<ByteBuffer> writeQueue = new LinkedList<>();
+    private final SelectorLoop loop;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    // Respostas em partes (streaming) seguram o lock até o fim para não intercalar com outras
+    private final ReentrantLock outputLock = new ReentrantLock();
+    // Uma transmissão por vez. Enquanto ela espera o cliente (streamDrained) o outputLock fica livre, e quem
+    // o pega com streaming ligado manda a saída para deferredEvents, repassada quando a transmissão termina.
+    private final ReentrantLock streamLock = new ReentrantLock();
+    private final Condition streamDrained = outputLock.newCondition();
+    private volatile boolean streaming;
+    private volatile boolean streamWaiting;
+    private volatile String username;
+    private volatile Session session;
+    // Definido quando a resposta que encerra a conexão já está na fila
+    private volatile boolean closeAfterFlush = false;
+
+    private final LineFramer framer;
+    // Fila MPSC: workers produzem, só o selector consome
+    private final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+    private static final int MAX_GATHER = 64;
+    private static final int COALESCE_THRESHOLD = 1024;
+    private static final long BUSY_RECHECK_MILLIS = 1000;
+    private final ByteBuffer[] inFlight = new ByteBuffer[MAX_GATHER];
+    private int inFlightCount;
+    private int inFlightOffset;
+    private ByteBuffer coalesceBuffer;
     private final Charset charset = StandardCharsets.UTF_8;
+    // Definidos pelo HELLO: frames com tamanho na frente, payload binário e compressão (ver FrameCodec)
+    private volatile boolean framed;
+    private volatile boolean binaryEncoding;
+    private volatile int compressionThreshold = -1;
+
+    // Eventos de inscrição (INSCREVER) e respostas 503 de recusa esperando o outputLock; quem solta o
+    // lock os coloca na fila de escrita
+    private final Queue<ByteBuffer> deferredEvents = new ConcurrentLinkedQueue<>();
+    private final Set<Integer> subscribedMovies = ConcurrentHashMap.newKeySet();
+    private volatile boolean catalogSubscribed;
+    private static final int MAX_MOVIE_SUBSCRIPTIONS = 64;
+    // Consumidor lento: eventos retidos fora da fila de escrita até ela esvaziar (guardados por parkedEvents)
+    private volatile ServerConfig.SlowConsumerPolicy slowConsumerPolicy;
+    private final LinkedHashMap<String, BroadcastMessage> parkedEvents = new LinkedHashMap<>();
+    private volatile boolean eventsParked;
+    private boolean resyncPending;
+    private long parkedSequence;
+    // Enviado no lugar dos eventos retidos quando eles passam de maxParkedEvents: o cliente recarrega tudo
+    private static final BroadcastMessage RESYNC_EVENT = new BroadcastMessage(new JSONObject().put("evento", "RESINCRONIZAR"), null);
+
+    // Linhas completas aguardando uma worker; processadas em ordem, uma de cada vez
+    private final Queue<byte[]> pendingRequests = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingRequestCount = new AtomicInteger();
+    private final AtomicBoolean processing = new AtomicBoolean(false);
+    // Requisições com id_requisicao em execução; limitadas a maxPendingRequests por conexão
+    private final AtomicInteger activeRequests = new AtomicInteger();
+
+    // Backpressure: bytes aguardando o socket; o estado de pausa só é tocado pelo selector
+    private final AtomicLong pendingWriteBytes = new AtomicLong();
+    private boolean readPaused = false;
+    private long readPausedSince;
+
+    // Timeouts avaliados pela roda de tempo do SelectorLoop (só a thread do selector toca)
+    private long lastActivityAt = System.currentTimeMillis();
+    private long frameStartedAt;
 
     private static final Map<String, String> RESPONSE_MESSAGES = new HashMap<>();
     static {
@@ -57,7 +126,28 @@ public class ClientHandler {
         RESPONSE_MESSAGES.put("405", "Erro: Campos inválidos, verifique o tipo e quantidade de caracteres");
         RESPONSE_MESSAGES.put("409", "Erro: Recurso ja existe");
         RESPONSE_MESSAGES.put("422", "Erro: Chaves faltantes ou invalidas");
+        RESPONSE_MESSAGES.put("429", "Erro: Limite de requisições excedido, tente novamente em instantes");
         RESPONSE_MESSAGES.put("500", "Erro: Falha interna do servidor");
+        RESPONSE_MESSAGES.put("503", "Erro: Servidor em desligamento, tente novamente em instantes");
+    }
+
+    private static final String REQUEST_ID_FIELD = "id_requisicao";
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final int STREAM_BATCH_SIZE = 256;
+
+    // Estado de uma requisição; cada uma roda inteira numa única worker
+    private record Session(JwtUtil.Principal principal, String token) {
+    }
+
+    private static final class RequestContext {
+        final Object requestId;
+        final boolean logged;
+        boolean closeAfterResponse;
+
+        RequestContext(Object requestId, boolean logged) {
+            this.requestId = requestId;
+            this.logged = logged;
+        }
     }
 
     private static final Set<String> PREDEFINED_GENRES = new HashSet<>(Arrays.asList(
@@ -66,85 +156,519 @@ public class ClientHandler {
     ));
 
 
-    public ClientHandler(SocketChannel channel, ServerController controller, Server server) {
+    public ClientHandler(SocketChannel channel, Server server, SelectorLoop loop) {
         this.channel = channel;
-        this.controller = controller;
+        this.logger = server.getLogger();
         this.server = server;
+        this.loop = loop;
+        this.framer = new LineFramer(server.getBufferPool());
         this.userDAO = new UserDAO();
-        this.movieDAO = new MovieDAO();
+        this.movieDAO = new MovieDAO(server.getSearchIndex());
         this.reviewDAO = new ReviewDAO();
+        this.slowConsumerPolicy = server.getConfig().getSlowConsumerPolicy();
     }
 
-    public void handleRead() throws IOException {
-        readBuffer.clear();
-        int bytesRead = channel.read(readBuffer);
+    public void handleRead(SelectionKey key) throws IOException {
+        int queuedBefore = pendingRequestCount.get();
+        int bytesRead = framer.readFrom(channel, this::enqueueRequest, server.getConfig().getMaxFrameLength());
 
         if (bytesRead == -1) {
             throw new IOException("Cliente fechou a conexão.");
         }
 
+        long now = System.currentTimeMillis();
+        lastActivityAt = now;
+        // O prazo de "meio de mensagem" conta do início da linha, não do último byte recebido
+        if (!framer.hasPartialFrame()) {
+            frameStartedAt = 0;
+        } else if (frameStartedAt == 0 || pendingRequestCount.get() != queuedBefore) {
+            frameStartedAt = now;
+        }
+
+        if (framer.getPendingBytes() > server.getConfig().getMaxFrameLength()) {
+            server.getMetrics().recordOversizedFrame();
+            throw new IOException("Requisição excede o tamanho máximo permitido.");
+        }
+
         if (bytesRead > 0) {
-            readBuffer.flip();
-            String chunk = charset.decode(readBuffer).toString();
-            lineBuilder.append(chunk);
+            scheduleProcessing();
+            updateInterestOps(key);
+        }
+    }
+
+    private void enqueueRequest(byte[] frame) {
+        pendingRequestCount.incrementAndGet();
+        pendingRequests.add(frame);
+    }
+
+    private void scheduleProcessing() {
+        while (!pendingRequests.isEmpty() && processing.compareAndSet(false, true)) {
+            if (server.dispatch(this::drainPendingRequests)) {
+                return;
+            }
+            // Pool já desligado: tudo o que está na fila recebe 503 e a conexão não fica presa em "processing"
+            byte[] frame;
+            while ((frame = pendingRequests.poll()) != null) {
+                pendingRequestCount.decrementAndGet();
+                rejectFrame(frame);
+            }
+            processing.set(false);
+        }
+    }
+
+    private void drainPendingRequests() {
+        try {
+            byte[] frame;
+            while ((frame = pendingRequests.poll()) != null) {
+                pendingRequestCount.decrementAndGet();
+                processFrame(frame);
+            }
+        } finally {
+            processing.set(false);
+        }
+        // Uma linha pode ter chegado entre o último poll e a liberação da flag
+        scheduleProcessing();
+    }
+
+    // Requisições com "id_requisicao" rodam em paralelo e podem responder fora de ordem;
+    // sem o campo, seguem na ordem de chegada como antes
+    private void processFrame(byte[] frame) {
+        // Em JSON por linha o log usa o texto recebido; em frames, o próprio objeto (convertido só no logger)
+        Object logged;
+        JSONObject request;
+        try {
+            if (framed) {
+                request = FrameCodec.decode(frame, server.getConfig().getMaxFrameLength());
+                logged = request;
+            } else {
+                String line = new String(frame, charset);
+                logged = line;
+                request = new JSONObject(line);
+            }
+        } catch (JSONException | IllegalArgumentException e) {
+            logger.logRequest("<- De", getIdentifier(), framed ? "(frame inválido, " + frame.length + " bytes)" : new String(frame, charset));
+            queueResponse(createErrorResponse(400), new RequestContext(null, true));
+            return;
+        }
+
+        RequestContext ctx = new RequestContext(request.opt(REQUEST_ID_FIELD), logger.shouldSample(request.optString("operacao", null)));
+        if (ctx.logged) {
+            logger.logRequest("<- De", getIdentifier(), logged);
+        }
+        if (ctx.requestId == null) {
+            execute(request, ctx);
+            return;
+        }
+        Runnable task = () -> {
+            try {
+                execute(request, ctx);
+            } finally {
+                // A resposta já passou pelo selector com esta requisição ainda contada; ao cruzar
+                // a marca de retomada, pede uma nova avaliação da pausa de leitura
+                if (activeRequests.decrementAndGet() == server.getConfig().getMaxPendingRequests() / 2) {
+                    server.registerForWrites(this);
+                }
+            }
+        };
+        // No limite, a requisição roda nesta worker: a fila da conexão para de andar e as em execução
+        // contam na pausa de leitura (updateInterestOps), então um cliente não abre workers sem fim
+        if (activeRequests.incrementAndGet() > server.getConfig().getMaxPendingRequests()) {
+            task.run();
+        } else if (!server.dispatch(task)) {
+            activeRequests.decrementAndGet();
+            queueRejection(ctx);
+        }
+    }
+
+    private void rejectFrame(byte[] frame) {
+        Object requestId = null;
+        try {
+            JSONObject request = framed
+                    ? FrameCodec.decode(frame, server.getConfig().getMaxFrameLength())
+                    : new JSONObject(new String(frame, charset));
+            requestId = request.opt(REQUEST_ID_FIELD);
+        } catch (JSONException | IllegalArgumentException ignored) {
+            // Sem id: a resposta vai na ordem, como a de uma requisição sem id_requisicao
+        }
+        queueRejection(new RequestContext(requestId, true));
+    }
 
-            processBufferLines();
+    // 503 para requisição que não conseguiu worker. Pode rodar na thread do selector, então não espera
+    // o outputLock: entra pela mesma fila dos eventos, que quem solta o lock repassa à fila de escrita.
+    private void queueRejection(RequestContext ctx) {
+        deferredEvents.add(encodeResponse(createErrorResponse(503), ctx));
+        if (outputLock.tryLock()) {
+            unlockOutput();
         }
+        server.registerForWrites(this);
+    }
+
+    private void execute(JSONObject request, RequestContext ctx) {
+        // Durante o desligamento só terminam as requisições já iniciadas
+        if (server.isDraining()) {
+            queueResponse(createErrorResponse(503), ctx);
+            return;
+        }
+        if (FrameCodec.HELLO.equals(request.optString("operacao"))) {
+            handleHello(request, ctx);
+            return;
+        }
+        JSONObject response = processRequest(request, ctx);
+        if (response != null) { // null: a resposta já foi transmitida em partes
+            queueResponse(response, ctx);
+        }
+    }
+
+    // Negocia o formato das mensagens seguintes. O framer e o modo da conexão mudam antes de a resposta
+    // entrar na fila, então o primeiro frame que o cliente manda ao recebê-la já é lido como frame; a
+    // resposta em si ainda sai em JSON por linha. O cliente não deve enviar nada antes de recebê-la.
+    private void handleHello(JSONObject request, RequestContext ctx) {
+        if (framed) {
+            queueResponse(createErrorResponse(400), ctx);
+            return;
+        }
+        ServerConfig config = server.getConfig();
+        boolean binary = config.isBinaryProtocolEnabled()
+                && offers(request, FrameCodec.FIELD_ENCODINGS, FrameCodec.ENCODING_BINARY);
+        boolean deflate = config.isCompressionEnabled()
+                && offers(request, FrameCodec.FIELD_COMPRESSIONS, FrameCodec.COMPRESSION_DEFLATE);
+
+        JSONObject response = createSuccessResponse("200");
+        response.put(FrameCodec.FIELD_ENCODING, binary ? FrameCodec.ENCODING_BINARY : FrameCodec.ENCODING_JSON);
+        response.put(FrameCodec.FIELD_COMPRESSION, deflate ? FrameCodec.COMPRESSION_DEFLATE : FrameCodec.COMPRESSION_NONE);
+        if (deflate) {
+            response.put(FrameCodec.FIELD_COMPRESSION_THRESHOLD, config.getCompressionThreshold());
+        }
+
+        if (binary || deflate) {
+            binaryEncoding = binary;
+            compressionThreshold = deflate ? config.getCompressionThreshold() : -1;
+            framer.enableLengthPrefix();
+            framed = true;
+        }
+        queueOutput(ctx, encodeLine(response, ctx));
     }
 
-    private void processBufferLines() {
-        while (true) {
-            int newlineIndex = lineBuilder.indexOf("\n");
-            if (newlineIndex == -1) {
-                break;
+    private static boolean offers(JSONObject request, String field, String value) {
+        JSONArray offered = request.optJSONArray(field);
+        if (offered != null) {
+            for (int i = 0; i < offered.length(); i++) {
+                if (value.equals(offered.optString(i))) {
+                    return true;
+                }
             }
+        }
+        return false;
+    }
 
-            String line = lineBuilder.substring(0, newlineIndex);
-            lineBuilder.delete(0, newlineIndex + 1);
+    private void queueResponse(JSONObject response, RequestContext ctx) {
+        queueOutput(ctx, encodeResponse(response, ctx));
+    }
 
-            if (line.isEmpty()) continue;
+    private ByteBuffer encodeResponse(JSONObject response, RequestContext ctx) {
+        if (!framed) {
+            return encodeLine(response, ctx);
+        }
+        if (ctx.requestId != null) {
+            response.put(REQUEST_ID_FIELD, ctx.requestId);
+        }
+        ByteBuffer buffer = FrameCodec.encode(response, binaryEncoding, compressionThreshold);
+        if (ctx.logged) {
+            logger.logRequest("-> Para", getIdentifier(), response);
+        }
+        return buffer;
+    }
 
-            String clientAddr = getIdentifier();
-            controller.log("<- De " + clientAddr + ": " + line, ServerController.LogType.REQUEST);
-            String response = processRequest(line);
+    private ByteBuffer encodeLine(JSONObject response, RequestContext ctx) {
+        String json = response.toString();
+        if (ctx.requestId != null) {
+            // O id vai na frente para o cliente achar o destino sem parsear a resposta inteira
+            String prefix = "{\"" + REQUEST_ID_FIELD + "\":" + JSONObject.valueToString(ctx.requestId);
+            json = prefix + (json.length() > 2 ? "," : "") + json.substring(1);
+        }
+        if (ctx.logged) {
+            logger.logRequest("-> Para", getIdentifier(), json);
+        }
+        return charset.encode(json + "\n");
+    }
 
-            controller.log("-> Para " + clientAddr + ": " + response, ServerController.LogType.REQUEST);
-            queueResponse(response);
+    private void queueOutput(RequestContext ctx, ByteBuffer... buffers) {
+        outputLock.lock();
+        try {
+            // Antes de enfileirar: o selector que vir estes bytes também vê o pedido de fechamento
+            if (ctx.closeAfterResponse) {
+                closeAfterFlush = true;
+            }
+            for (ByteBuffer buffer : buffers) {
+                if (streaming) {
+                    deferredEvents.add(buffer);
+                } else {
+                    enqueueOutput(buffer);
+                }
+            }
+        } finally {
+            unlockOutput();
         }
+        server.registerForWrites(this);
     }
 
-    private void queueResponse(String response) {
-        String line = response + "\n";
-        ByteBuffer buffer = charset.encode(line);
-        synchronized (writeQueue) {
-            writeQueue.add(buffer);
+    // Evento sem id_requisicao (inscrições e Server.broadcast), já codificado e compartilhado entre as conexões.
+    // Nunca espera o outputLock: uma listagem transmitida em partes pode segurá-lo por muito tempo, e quem
+    // publica é a worker de outra conexão. Com muitos bytes aguardando o socket, vale a slowConsumerPolicy.
+    void pushEvent(BroadcastMessage message) {
+        if (closed.get() || closeAfterFlush) {
+            return;
+        }
+        if (eventsParked || pendingWriteBytes.get() > server.getConfig().getEventBacklogBytes()) {
+            parkEvent(message);
+            // O selector solta os retidos quando a fila baixar (updateInterestOps)
+            server.registerForWrites(this);
+            return;
+        }
+        deferredEvents.add(message.bufferFor(framed, binaryEncoding, compressionThreshold));
+        if (outputLock.tryLock()) {
+            unlockOutput();
         }
         server.registerForWrites(this);
     }
 
+    private void parkEvent(BroadcastMessage message) {
+        ServerMetrics metrics = server.getMetrics();
+        if (slowConsumerPolicy == ServerConfig.SlowConsumerPolicy.DROP) {
+            metrics.recordDroppedEvents(1);
+            return;
+        }
+        synchronized (parkedEvents) {
+            if (resyncPending) {
+                // O cliente vai recarregar tudo depois do RESINCRONIZAR; este evento já estará incluído
+                metrics.recordCoalescedEvent();
+                return;
+            }
+            String key = message.coalesceKey();
+            if (key == null) {
+                key = "#" + parkedSequence++;
+            } else if (parkedEvents.remove(key) != null) {
+                metrics.recordCoalescedEvent();
+            }
+            if (parkedEvents.size() >= server.getConfig().getMaxParkedEvents()) {
+                metrics.recordDroppedEvents(parkedEvents.size() + 1);
+                parkedEvents.clear();
+                resyncPending = true;
+            } else {
+                parkedEvents.put(key, message);
+            }
+            eventsParked = true;
+        }
+    }
+
+    // Só na thread do selector, com a fila de escrita já abaixo do limite
+    private void releaseParkedEvents() {
+        synchronized (parkedEvents) {
+            if (resyncPending) {
+                deferredEvents.add(RESYNC_EVENT.bufferFor(framed, binaryEncoding, compressionThreshold));
+            } else {
+                for (BroadcastMessage message : parkedEvents.values()) {
+                    deferredEvents.add(message.bufferFor(framed, binaryEncoding, compressionThreshold));
+                }
+            }
+            parkedEvents.clear();
+            resyncPending = false;
+            eventsParked = false;
+        }
+        if (outputLock.tryLock()) {
+            unlockOutput();
+        }
+    }
+
+    // Solta o outputLock depois de passar para a fila de escrita os eventos que chegaram enquanto estava
+    // preso. Um evento adicionado logo depois de soltar é pego na volta do laço (ou por quem pegou o lock).
+    // No meio de uma transmissão nada é repassado: quem a termina faz isso.
+    private void unlockOutput() {
+        do {
+            if (!streaming) {
+                ByteBuffer event;
+                while ((event = deferredEvents.poll()) != null) {
+                    enqueueOutput(event);
+                }
+            }
+            outputLock.unlock();
+        } while (!streaming && !deferredEvents.isEmpty() && outputLock.tryLock());
+    }
+
+    private void enqueueOutput(ByteBuffer buffer) {
+        pendingWriteBytes.addAndGet(buffer.remaining());
+        writeQueue.add(buffer);
+    }
+
+    // Uma única escrita "gathering" por wakeup; se sobrar algo o OP_WRITE continua ligado
     public boolean handleWrite(SelectionKey key) throws IOException {
-        synchronized (writeQueue) {
-            while (!writeQueue.isEmpty()) {
-                ByteBuffer buffer = writeQueue.peek();
-                channel.write(buffer);
+        if (inFlightCount == 0) {
+            fillInFlight();
+        }
 
-                if (buffer.hasRemaining()) {
-                    return true;
+        if (inFlightCount > 0) {
+            long written = channel.write(inFlight, inFlightOffset, inFlightCount - inFlightOffset);
+            pendingWriteBytes.addAndGet(-written);
+            if (written > 0) {
+                lastActivityAt = System.currentTimeMillis();
+            }
+            while (inFlightOffset < inFlightCount && !inFlight[inFlightOffset].hasRemaining()) {
+                releaseIfPooled(inFlight[inFlightOffset]);
+                inFlight[inFlightOffset++] = null;
+            }
+            if (inFlightOffset < inFlightCount) {
+                updateInterestOps(key);
+                return true;
+            }
+            finishInFlight();
+        }
+
+        updateInterestOps(key);
+
+        return !isFlushedForClose();
+    }
+
+    // Só na thread do selector. closeAfterFlush é marcado com o outputLock na mão, antes de enfileirar a
+    // resposta; com o lock livre e as filas vazias ela já saiu inteira. Se o lock ainda estiver preso, quem
+    // o segura chama registerForWrites ao soltar e o selector confere de novo.
+    boolean isFlushedForClose() {
+        return closeAfterFlush && inFlightCount == 0 && writeQueue.isEmpty() && deferredEvents.isEmpty()
+                && !outputLock.isLocked();
+    }
+
+    // Só na thread do selector. Acima da marca alta para de ler até a fila baixar da marca baixa.
+    void updateInterestOps(SelectionKey key) {
+        ServerConfig config = server.getConfig();
+        if (eventsParked && pendingWriteBytes.get() <= config.getEventBacklogBytes() / 2) {
+            releaseParkedEvents();
+        }
+        long pendingBytes = pendingWriteBytes.get();
+        if (streamWaiting && pendingBytes <= config.getWriteLowWatermark()) {
+            signalStreamDrained();
+        }
+        // Linhas na fila mais as requisições com id_requisicao já em execução
+        int pendingCount = pendingRequestCount.get() + activeRequests.get();
+
+        if (!readPaused && (pendingBytes > config.getWriteHighWatermark() || pendingCount > config.getMaxPendingRequests())) {
+            readPaused = true;
+            readPausedSince = System.currentTimeMillis();
+            server.getMetrics().recordBackpressurePause();
+        } else if (readPaused && pendingBytes <= config.getWriteLowWatermark() && pendingCount <= config.getMaxPendingRequests() / 2) {
+            readPaused = false;
+        }
+
+        int ops = readPaused ? 0 : SelectionKey.OP_READ;
+        if (inFlightCount > 0 || !writeQueue.isEmpty()) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        key.interestOps(ops);
+    }
+
+    // Só na thread do selector, que não espera o lock. streamWaiting é ligado com o lock na mão antes de
+    // conferir a fila, então conseguir o lock aqui quer dizer que a transmissão já está em await; se não
+    // conseguir, ela está entre a conferência e o await (ou outra thread segura o lock por pouco) e o
+    // selector tenta de novo na próxima volta.
+    private void signalStreamDrained() {
+        if (outputLock.tryLock()) {
+            streamDrained.signalAll();
+            unlockOutput();
+        } else if (!closed.get()) {
+            server.registerForWrites(this);
+        }
+    }
+
+    // Prazo da conexão conforme o estado atual; valores de timeout <= 0 desativam o prazo
+    long nextDeadline(long now) {
+        ServerConfig config = server.getConfig();
+        if (readPaused) {
+            return deadlineFrom(readPausedSince, config.getMaxBackpressureMillis(), now);
+        }
+        if (processing.get() || pendingRequestCount.get() > 0 || activeRequests.get() > 0) {
+            return now + BUSY_RECHECK_MILLIS;
+        }
+        if (framer.hasPartialFrame()) {
+            return deadlineFrom(frameStartedAt, config.getMidFrameTimeoutMillis(), now);
+        }
+        if (username == null) {
+            return deadlineFrom(lastActivityAt, config.getPreLoginTimeoutMillis(), now);
+        }
+        return deadlineFrom(lastActivityAt, config.getAuthenticatedIdleTimeoutMillis(), now);
+    }
+
+    private static long deadlineFrom(long start, long timeout, long now) {
+        return timeout > 0 ? start + timeout : now + BUSY_RECHECK_MILLIS;
+    }
+
+    // Sem requisições pendentes nem bytes aguardando envio, incluindo eventos ainda fora da fila de
+    // escrita (esperando o outputLock ou retidos por consumidor lento); usado pelo desligamento gracioso
+    boolean isIdle() {
+        return !processing.get() && pendingRequestCount.get() == 0 && activeRequests.get() == 0
+                && pendingWriteBytes.get() == 0 && deferredEvents.isEmpty() && !eventsParked;
+    }
+
+    String getTimeoutState() {
+        if (readPaused) return "backpressure";
+        if (framer.hasPartialFrame()) return "mensagem incompleta";
+        return username == null ? "pré-login" : "autenticado";
+    }
+
+    boolean isReadPaused() {
+        return readPaused;
+    }
+
+    // Respostas pequenas e consecutivas são copiadas para um único buffer do pool
+    private void fillInFlight() {
+        BufferPool pool = server.getBufferPool();
+        ByteBuffer buffer;
+        while (inFlightCount < MAX_GATHER && (buffer = writeQueue.poll()) != null) {
+            int size = buffer.remaining();
+            if (size <= COALESCE_THRESHOLD) {
+                // O tamanho do buffer do pool é configurável (readBufferSize): só copia o que cabe
+                if (coalesceBuffer == null && size <= pool.getBufferSize()) {
+                    coalesceBuffer = pool.acquire();
+                    coalesceBuffer.put(buffer);
+                    releaseIfPooled(buffer);
+                    inFlight[inFlightCount++] = coalesceBuffer;
+                    continue;
+                }
+                if (coalesceBuffer != null && inFlight[inFlightCount - 1] == coalesceBuffer && coalesceBuffer.remaining() >= size) {
+                    coalesceBuffer.put(buffer);
+                    releaseIfPooled(buffer);
+                    continue;
                 }
-                writeQueue.poll();
             }
+            inFlight[inFlightCount++] = buffer;
+        }
+        if (coalesceBuffer != null) {
+            coalesceBuffer.flip();
         }
+    }
 
-        key.interestOps(SelectionKey.OP_READ);
+    // Buffers diretos na fila de escrita sempre vêm do BufferPool (streaming) e voltam para ele depois de enviados
+    private void releaseIfPooled(ByteBuffer buffer) {
+        if (buffer.isDirect() && buffer != coalesceBuffer) {
+            server.getBufferPool().release(buffer);
+        }
+    }
 
-        return !needsToClose || !writeQueue.isEmpty();
+    private void finishInFlight() {
+        if (coalesceBuffer != null) {
+            server.getBufferPool().release(coalesceBuffer);
+            coalesceBuffer = null;
+        }
+        inFlightCount = 0;
+        inFlightOffset = 0;
     }
 
-    private String processRequest(String jsonRequest) {
+    private JSONObject processRequest(JSONObject request, RequestContext ctx) {
         try {
-            JSONObject request = new JSONObject(jsonRequest);
             String operacao = request.getString("operacao");
 
+            if (("LOGIN".equals(operacao) || "CRIAR_USUARIO".equals(operacao))
+                    && !server.admitRequest(getClientIpAddress(), null, operacao)) {
+                return createErrorResponse(429);
+            }
+
             switch (operacao) {
                 case "LOGIN":
                     if (!request.has("usuario") || !request.has("senha")) {
@@ -158,51 +682,74 @@ public class ClientHandler {
                     return handleCreateUser(request);
             }
 
+            boolean sessionMode = server.getConfig().isConnectionSessionEnabled();
+            JwtUtil.Principal principal;
             if (!request.has("token")) {
-                return createErrorResponse(422);
-            }
-
-            String token = request.optString("token");
-            if (token.isEmpty()) {
-                return createErrorResponse(401);
+                // Sem token, vale a sessão da conexão (se já houve LOGIN ou um token válido antes)
+                principal = sessionMode ? currentSession() : null;
+                if (principal == null) {
+                    return createErrorResponse(422);
+                }
+            } else {
+                String token = request.optString("token");
+                if (token.isEmpty()) {
+                    return createErrorResponse(401);
+                }
+                Session current = session;
+                boolean sameToken = current != null && token.equals(current.token());
+                principal = sessionMode && sameToken ? currentSession() : JwtUtil.authenticate(token);
+                if (principal == null) {
+                    // Token inválido conta no orçamento do IP, para frear tentativas em massa
+                    return server.admitRequest(getClientIpAddress(), null, operacao)
+                            ? createErrorResponse(401) : createErrorResponse(429);
+                }
+                // Um token válido diferente troca a sessão, como um novo LOGIN: a conexão passa a ser
+                // desse usuário também no índice por usuário (disconnectUser, eventos)
+                if (!sameToken) {
+                    bindSession(principal, token);
+                }
             }
+            int userIdFromToken = principal.userId();
+            String userFromToken = principal.username();
+            String roleFromToken = principal.role();
 
-            Integer userIdFromToken = JwtUtil.getUserIdFromToken(token);
-            String userFromToken = JwtUtil.getUsernameFromToken(token);
-            String roleFromToken = JwtUtil.getRoleFromToken(token);
-
-            if (userFromToken == null || userIdFromToken == null || roleFromToken == null) {
-                return createErrorResponse(401);
+            if (!server.admitRequest(getClientIpAddress(), userIdFromToken, operacao)) {
+                return createErrorResponse(429);
             }
 
             try {
-                User currentUser = userDAO.findById(userIdFromToken);
-                if (currentUser == null) {
-                    needsToClose = true;
+                if (!userDAO.exists(userIdFromToken)) {
+                    revokeSession();
+                    ctx.closeAfterResponse = true;
                     return createErrorResponse(404);
                 }
             } catch (SQLException e) {
-                controller.log("Erro ao verificar existência do usuário: " + e.getMessage(), ServerController.LogType.ERROR);
+                logger.log("Erro ao verificar existência do usuário: " + e.getMessage(), LogType.ERROR);
                 return createErrorResponse(500);
             }
 
 
             switch (operacao) {
                 case "LOGOUT":
-                    return handleLogout();
+                    return handleLogout(ctx);
                 case "EDITAR_PROPRIO_USUARIO":
                     if (!request.has("usuario")) {
                         return createErrorResponse(422);
                     }
                     return handleUpdateOwnPassword(request, userFromToken);
                 case "EXCLUIR_PROPRIO_USUARIO":
-                    return handleDeleteOwnUser(userFromToken);
+                    return handleDeleteOwnUser(userFromToken, userIdFromToken, ctx);
                 case "LISTAR_PROPRIO_USUARIO":
                     return handleListOwnUser(userFromToken);
                 case "LISTAR_FILMES":
-                    return handleListMovies();
+                    return handleListMovies(request, ctx);
                 case "BUSCAR_FILME_ID":
                     return handleGetMovieById(request, userIdFromToken);
+                case "BUSCAR_FILMES":
+                    if (!request.has("busca")) {
+                        return createErrorResponse(422);
+                    }
+                    return handleSearchMovies(request);
                 case "CRIAR_REVIEW":
                     return handleCreateReview(request, userIdFromToken, userFromToken, roleFromToken);
                 case "LISTAR_REVIEWS_USUARIO":
@@ -211,6 +758,10 @@ public class ClientHandler {
                     return handleEditReview(request, userIdFromToken, roleFromToken);
                 case "EXCLUIR_REVIEW":
                     return handleDeleteReview(request, userIdFromToken, roleFromToken);
+                case "INSCREVER":
+                    return handleSubscribe(request);
+                case "CANCELAR_INSCRICAO":
+                    return handleUnsubscribe(request);
             }
 
             if (!"admin".equals(roleFromToken)) {
@@ -232,35 +783,80 @@ public class ClientHandler {
         }
     }
 
-    private String handleLogin(JSONObject request) {
+    // A conexão passa a lembrar quem está autenticado; com connectionSessionEnabled, pedidos seguintes
+    // podem omitir o token e reenviar o mesmo token não passa de novo pela verificação. Um novo LOGIN ou
+    // um token de outro usuário troca a sessão.
+    private void bindSession(JwtUtil.Principal principal, String token) {
+        Session previous = session;
+        session = new Session(principal, token);
+        if (previous == null || previous.principal().userId() != principal.userId()) {
+            if (previous != null) {
+                server.unregisterUserConnection(previous.principal().userId(), this);
+            }
+            server.registerUserConnection(principal.userId(), this);
+            // Se a conexão fechou enquanto registrava, o closeConnection pode já ter passado
+            if (closed.get()) {
+                server.unregisterUserConnection(principal.userId(), this);
+            }
+        }
+        if (!principal.username().equals(username)) {
+            if (username != null) {
+                server.removeAuthenticatedUser(String.format("%s (%s)", username, getClientIpAddress()));
+            }
+            this.username = principal.username();
+            String userWithIp = String.format("%s (%s)", principal.username(), getClientIpAddress());
+            server.addAuthenticatedUser(userWithIp);
+        }
+    }
+
+    // Sessão vencida junto com o token deixa de valer
+    private JwtUtil.Principal currentSession() {
+        Session current = session;
+        if (current == null) {
+            return null;
+        }
+        if (current.principal().expiresAtMillis() <= System.currentTimeMillis()) {
+            revokeSession();
+            return null;
+        }
+        return current.principal();
+    }
+
+    // Chamado quando o usuário é excluído ou sai: nenhum pedido seguinte usa a sessão
+    void revokeSession() {
+        Session previous = session;
+        session = null;
+        if (previous != null) {
+            server.unregisterUserConnection(previous.principal().userId(), this);
+        }
+    }
+
+    private JSONObject handleLogin(JSONObject request) {
         try {
             String user = request.getString("usuario");
             String pass = request.getString("senha");
 
             User foundUser = userDAO.findByUsername(user);
             if (foundUser != null && foundUser.getSenha().equals(pass)) {
-                this.username = user;
-                String userWithIp = String.format("%s (%s)", user, getClientIpAddress());
-                server.addAuthenticatedUser(userWithIp);
-
                 String role = "admin".equals(user) ? "admin" : "user";
                 String token = JwtUtil.generateToken(user, role, foundUser.getId());
+                bindSession(JwtUtil.authenticate(token), token);
 
                 JSONObject response = createSuccessResponse("200");
                 response.put("token", token);
-                return response.toString();
+                return response;
             } else {
                 return createErrorResponse(401);
             }
         } catch (SQLException e) {
-            controller.log("Erro SQL no login: " + e.getMessage(), ServerController.LogType.ERROR);
+            logger.log("Erro SQL no login: " + e.getMessage(), LogType.ERROR);
             return createErrorResponse(500);
         } catch (JSONException e) {
             return createErrorResponse(400);
         }
     }
 
-    private String handleCreateUser(JSONObject request) {
+    private JSONObject handleCreateUser(JSONObject request) {
         try {
             JSONObject userJson = request.getJSONObject("usuario");
             String username = userJson.getString("nome");
@@ -277,20 +873,20 @@ public class ClientHandler {
             newUser.setNome(username);
             newUser.setSenha(password);
             userDAO.createUser(newUser);
-            return createSuccessResponse("201").toString();
+            return createSuccessResponse("201");
 
         } catch (SQLException e) {
             if (e.getMessage().contains("UNIQUE constraint failed")) {
                 return createErrorResponse(409);
             }
-            controller.log("Erro SQL ao criar usuário: " + e.getMessage(), ServerController.LogType.ERROR);
+            logger.log("Erro SQL ao criar usuário: " + e.getMessage(), LogType.ERROR);
             return createErrorResponse(500);
         } catch (JSONException e) {
             return createErrorResponse(422);
         }
     }
 
-    private String handleUpdateOwnPassword(JSONObject request, String userFromToken) {
+    private JSONObject handleUpdateOwnPassword(JSONObject request, String userFromToken) {
         try {
             if ("admin".equalsIgnoreCase(userFromToken)) {
                 return createErrorResponse(403);
@@ -303,43 +899,48 @@ public class ClientHandler {
             }
 
             if (userDAO.updatePassword(userFromToken, newPassword)) {
-                return createSuccessResponse("200").toString();
+                return createSuccessResponse("200");
             } else {
                 return createErrorResponse(404);
             }
         } catch (SQLException e) {
-            controller.log("Erro SQL ao atualizar própria senha: " + e.getMessage(), ServerController.LogType.ERROR);
+            logger.log("Erro SQL ao atualizar própria senha: " + e.getMessage(), LogType.ERROR);
             return createErrorResponse(500);
         } catch (JSONException e) {
             return createErrorResponse(422);
         }
     }
 
-    private String handleDeleteOwnUser(String userFromToken) {
+    private JSONObject handleDeleteOwnUser(String userFromToken, int userIdFromToken, RequestContext ctx) {
         try {
             if ("admin".equalsIgnoreCase(userFromToken)) {
                 return createErrorResponse(403);
             }
 
+            List<Review> reviews = reviewDAO.findReviewsByUserId(userIdFromToken);
             if (userDAO.deleteUser(userFromToken)) {
-                this.needsToClose = true;
-                return createSuccessResponse("200").toString();
+                publishReviewsRemoved(reviews);
+                // Esta conexão fecha depois da resposta; as outras sessões do usuário, agora
+                server.disconnectUser(userIdFromToken, this);
+                revokeSession();
+                ctx.closeAfterResponse = true;
+                return createSuccessResponse("200");
             } else {
                 return createErrorResponse(404);
             }
         } catch (SQLException e) {
-            controller.log("Erro SQL ao excluir próprio usuário: " + e.getMessage(), ServerController.LogType.ERROR);
+            logger.log("Erro SQL ao excluir próprio usuário: " + e.getMessage(), LogType.ERROR);
             return createErrorResponse(500);
         }
     }
 
-    private String handleListOwnUser(String userFromToken) {
+    private JSONObject handleListOwnUser(String userFromToken) {
         JSONObject response = createSuccessResponse("200");
         response.put("usuario", userFromToken);
-        return response.toString();
+        return response;
     }
 
-    private String handleCreateMovie(JSONObject request) {
+    private JSONObject handleCreateMovie(JSONObject request) {
         try {
             JSONObject movieJson = request.getJSONObject("filme");
             List<String> receivedGenres = jsonArrayToList(movieJson.optJSONArray("genero"));
@@ -349,19 +950,20 @@ public class ClientHandler {
             }
             Movie movie = movieFromJson(movieJson, receivedGenres);
             movieDAO.createMovie(movie);
-            return createSuccessResponse("201").toString();
+            publishMovieSaved("FILME_CRIADO", movie.getId());
+            return createSuccessResponse("201");
         } catch (SQLException e) {
             if (e.getMessage().contains("UNIQUE constraint failed")) {
                 return createErrorResponse(409);
             }
-            controller.log("Erro SQL ao criar filme: " + e.getMessage(), ServerController.LogType.ERROR);
+            logger.log("Erro SQL ao criar filme: " + e.getMessage(), LogType.ERROR);
             return createErrorResponse(500);
         } catch (JSONException e) {
             return createErrorResponse(400);
         }
     }
 
-    private String handleUpdateMovie(JSONObject request) {
+    private JSONObject handleUpdateMovie(JSONObject request) {
         try {
             JSONObject movieJson = request.getJSONObject("filme");
             List<String> receivedGenres = jsonArrayToList(movieJson.optJSONArray("genero"));
@@ -371,7 +973,8 @@ public class ClientHandler {
             }
             Movie movie = movieFromJson(movieJson, receivedGenres);
             if (movieDAO.updateMovie(movie)) {
-                return createSuccessResponse("200").toString();
+                publishMovieSaved("FILME_EDITADO", movie.getId());
+                return createSuccessResponse("200");
             } else {
                 return createErrorResponse(404);
             }
@@ -379,76 +982,159 @@ public class ClientHandler {
             if (e.getMessage().contains("UNIQUE constraint failed")) {
                 return createErrorResponse(409);
             }
-            controller.log("Erro SQL ao editar filme: " + e.getMessage(), ServerController.LogType.ERROR);
+            logger.log("Erro SQL ao editar filme: " + e.getMessage(), LogType.ERROR);
             return createErrorResponse(500);
         } catch (JSONException | NumberFormatException e) {
             return createErrorResponse(400);
         }
     }
 
-    private String handleDeleteMovie(JSONObject request) {
+    private JSONObject handleDeleteMovie(JSONObject request) {
         try {
             int id = Integer.parseInt(request.getString("id"));
             if (movieDAO.deleteMovie(id)) {
-                return createSuccessResponse("200").toString();
+                publishMovieDeleted(id);
+                return createSuccessResponse("200");
             } else {
                 return createErrorResponse(404);
             }
         } catch (SQLException e) {
-            controller.log("Erro SQL ao excluir filme: " + e.getMessage(), ServerController.LogType.ERROR);
+            logger.log("Erro SQL ao excluir filme: " + e.getMessage(), LogType.ERROR);
             return createErrorResponse(500);
         } catch (JSONException | NumberFormatException e) {
             return createErrorResponse(400);
         }
     }
 
-    private String handleGetMovieById(JSONObject request, int requesterId) {
+    // Filme e reviews vêm do cache por filme; por requisição só muda a marcação da review de quem pede
+    private JSONObject handleGetMovieById(JSONObject request, int requesterId) {
         try {
             int id = Integer.parseInt(request.getString("id_filme"));
-            Movie movie = movieDAO.findMovieById(id);
-            if (movie == null) {
+            MovieDetailsCache.Details details = server.getMovieDetailsCache().get(id, this::loadMovieDetails);
+            if (details == null) {
                 return createErrorResponse(404);
             }
-            List<Review> reviews = reviewDAO.findReviewsByMovieId(id);
-            JSONArray reviewsJson = new JSONArray();
-            for (Review review : reviews) {
-                JSONObject reviewJson = jsonFromReview(review);
-
-                boolean isOwner = (requesterId == review.getIdUsuario());
-                reviewJson.put("isOwnReview", isOwner);
-
-                reviewsJson.put(reviewJson);
-            }
 
             JSONObject response = createSuccessResponse("200");
-            response.put("filme", jsonFromMovie(movie));
-            response.put("reviews", reviewsJson);
-            return response.toString();
+            response.put("filme", details.movie());
+            response.put("reviews", details.reviewsFor(requesterId));
+            return response;
         } catch (NumberFormatException | JSONException e) {
             return createErrorResponse(400);
         } catch (SQLException e) {
-            controller.log("Erro SQL ao buscar filme por ID: " + e.getMessage(), ServerController.LogType.ERROR);
+            logger.log("Erro SQL ao buscar filme por ID: " + e.getMessage(), LogType.ERROR);
             return createErrorResponse(500);
         }
     }
 
-    private String handleListMovies() {
+    private MovieDetailsCache.Details loadMovieDetails(int id) throws SQLException {
+        Movie movie = movieDAO.findMovieById(id);
+        if (movie == null) {
+            return null;
+        }
+        List<Review> reviews = reviewDAO.findReviewsByMovieId(id);
+        JSONObject[] reviewsJson = new JSONObject[reviews.size()];
+        int[] reviewerIds = new int[reviews.size()];
+        for (int i = 0; i < reviews.size(); i++) {
+            reviewsJson[i] = jsonFromReview(reviews.get(i));
+            reviewsJson[i].put("isOwnReview", false);
+            reviewerIds[i] = reviews.get(i).getIdUsuario();
+        }
+        return new MovieDetailsCache.Details(jsonFromMovie(movie), reviewsJson, reviewerIds);
+    }
+
+    // Busca por texto no índice em memória (título, diretor e sinopse); o banco só é consultado pela
+    // chave primária para montar os filmes da página de resultados, já na ordem de relevância
+    private JSONObject handleSearchMovies(JSONObject request) {
+        String text = request.optString("busca", "").trim();
+        int limit = DEFAULT_SEARCH_LIMIT;
+        try {
+            if (request.has("limite")) {
+                limit = optInteger(request, "limite");
+            }
+        } catch (IllegalArgumentException e) {
+            return createErrorResponse(405);
+        }
+        if (text.isEmpty() || text.length() > 100 || limit < 1 || limit > server.getConfig().getMaxPageSize()) {
+            return createErrorResponse(405);
+        }
+
+        MovieSearchIndex.Result result = server.getSearchIndex().search(text, limit);
+        List<Integer> ids = new ArrayList<>(result.hits().size());
+        for (MovieSearchIndex.Hit hit : result.hits()) {
+            ids.add(hit.movieId());
+        }
         try {
-            List<Movie> movies = movieDAO.listMovies();
             JSONArray moviesJson = new JSONArray();
-            for (Movie movie : movies) {
+            for (Movie movie : movieDAO.findMoviesByIds(ids)) {
                 moviesJson.put(jsonFromMovie(movie));
             }
             JSONObject response = createSuccessResponse("200");
             response.put("filmes", moviesJson);
-            return response.toString();
+            response.put("total", String.valueOf(result.totalMatches()));
+            return response;
         } catch (SQLException e) {
-            controller.log("Erro SQL ao listar filmes: " + e.getMessage(), ServerController.LogType.ERROR);
+            logger.log("Erro SQL ao buscar filmes: " + e.getMessage(), LogType.ERROR);
             return createErrorResponse(500);
         }
     }
 
-    private String handleCreateReview(JSONObject request, int userId, String username, String role) {
+    private JSONObject handleListMovies(JSONObject request, RequestContext ctx) {
+        MovieQuery query;
+        try {
+            query = movieQueryFromRequest(request);
+        } catch (IllegalArgumentException | JSONException e) {
+            return createErrorResponse(405);
+        }
+        if (request.has("limite")) {
+            return handleListMoviesPage(request, query);
+        }
+        if (query.isUnfiltered()) {
+            return sendCachedMovieList(ctx);
+        }
+        if (!framed) {
+            return streamListMovies(query, ctx);
+        }
+        try {
+            return movieListResponse(query);
+        } catch (SQLException e) {
+            logger.log("Erro SQL ao listar filmes: " + e.getMessage(), LogType.ERROR);
+            return createErrorResponse(500);
+        }
+    }
+
+    private JSONObject movieListResponse(MovieQuery query) throws SQLException {
+        List<Movie> movies = movieDAO.listMovies(query, 0);
+        JSONArray moviesJson = new JSONArray();
+        for (Movie movie : movies) {
+            moviesJson.put(jsonFromMovie(movie));
+        }
+        JSONObject response = createSuccessResponse("200");
+        response.put("filmes", moviesJson);
+        return response;
+    }
+
+    // O catálogo inteiro é serializado uma vez por versão e compartilhado entre as conexões;
+    // cada resposta só acrescenta o próprio id (e o cabeçalho do frame) na frente dos mesmos bytes
+    private JSONObject sendCachedMovieList(RequestContext ctx) {
+        PreparedMessage message;
+        try {
+            message = server.getMovieListCache().get(() -> movieListResponse(new MovieQuery()));
+        } catch (SQLException e) {
+            logger.log("Erro SQL ao listar filmes: " + e.getMessage(), LogType.ERROR);
+            return createErrorResponse(500);
+        }
+        ByteBuffer[] buffers = framed
+                ? message.frame(REQUEST_ID_FIELD, ctx.requestId, binaryEncoding, compressionThreshold)
+                : message.jsonLine(REQUEST_ID_FIELD, ctx.requestId);
+        if (ctx.logged) {
+            logger.logRequest("-> Para", getIdentifier(), "(lista de filmes em cache, " + message.size() + " bytes)");
+        }
+        queueOutput(ctx, buffers);
+        return null;
+    }
+
+    private JSONObject handleCreateReview(JSONObject request, int userId, String username, String role) {
         if (!"user".equals(role)) {
             return createErrorResponse(403);
         }
@@ -467,7 +1153,9 @@ public class ClientHandler {
             newReview.setNomeUsuario(username);
 
             reviewDAO.createReview(newReview);
-            return createSuccessResponse("201").toString();
+            publishReviewEvent("REVIEW_CRIADA", newReview);
+            publishRatingChanged(newReview.getIdFilme());
+            return createSuccessResponse("201");
 
         } catch (SQLException e) {
             if (e.getMessage().contains("UNIQUE constraint failed")) {
@@ -475,14 +1163,14 @@ public class ClientHandler {
             } else if (e.getMessage().contains("FOREIGN KEY constraint failed")) {
                 return createErrorResponse(404, "Erro: Filme não encontrado.");
             }
-            controller.log("Erro SQL ao criar review: " + e.getMessage(), ServerController.LogType.ERROR);
+            logger.log("Erro SQL ao criar review: " + e.getMessage(), LogType.ERROR);
             return createErrorResponse(500);
         } catch (JSONException | NumberFormatException e) {
             return createErrorResponse(400);
         }
     }
 
-    private String handleListUserReviews(int userId) {
+    private JSONObject handleListUserReviews(int userId) {
         try {
             List<Review> reviews = reviewDAO.findReviewsByUserId(userId);
             JSONArray reviewsJson = new JSONArray();
@@ -491,14 +1179,14 @@ public class ClientHandler {
             }
             JSONObject response = createSuccessResponse("200");
             response.put("reviews", reviewsJson);
-            return response.toString();
+            return response;
         } catch (SQLException e) {
-            controller.log("Erro SQL ao listar reviews do usuário: " + e.getMessage(), ServerController.LogType.ERROR);
+            logger.log("Erro SQL ao listar reviews do usuário: " + e.getMessage(), LogType.ERROR);
             return createErrorResponse(500);
         }
     }
 
-    private String handleEditReview(JSONObject request, int userId, String role) {
+    private JSONObject handleEditReview(JSONObject request, int userId, String role) {
         if (!"user".equals(role)) {
             return createErrorResponse(403);
         }
@@ -535,22 +1223,27 @@ public class ClientHandler {
             reviewToUpdate.setDescricao(descricao);
 
             if (reviewDAO.updateReview(reviewToUpdate)) {
-                return createSuccessResponse("200").toString();
+                reviewToUpdate.setEditado("true");
+                publishReviewEvent("REVIEW_EDITADA", reviewToUpdate);
+                publishRatingChanged(reviewToUpdate.getIdFilme());
+                return createSuccessResponse("200");
             } else {
                 return createErrorResponse(404);
             }
 
         } catch (SQLException e) {
-            controller.log("Erro SQL ao editar review: " + e.getMessage(), ServerController.LogType.ERROR);
+            logger.log("Erro SQL ao editar review: " + e.getMessage(), LogType.ERROR);
             return createErrorResponse(500);
         } catch (JSONException | NumberFormatException e) {
             return createErrorResponse(400);
         }
     }
 
-    private String handleDeleteReview(JSONObject request, int userId, String role) {
+    private JSONObject handleDeleteReview(JSONObject request, int userId, String role) {
         try {
             int reviewId = Integer.parseInt(request.getString("id"));
+            // Lida antes só para saber o filme do evento
+            Review review = reviewDAO.findById(reviewId);
             boolean success;
 
             if ("admin".equals(role)) {
@@ -562,12 +1255,16 @@ public class ClientHandler {
             }
 
             if (success) {
-                return createSuccessResponse("200").toString();
+                if (review != null) {
+                    publishReviewEvent("REVIEW_EXCLUIDA", review);
+                    publishRatingChanged(review.getIdFilme());
+                }
+                return createSuccessResponse("200");
             } else {
                 return createErrorResponse(404);
             }
         } catch (SQLException e) {
-            controller.log("Erro SQL ao excluir review: " + e.getMessage(), ServerController.LogType.ERROR);
+            logger.log("Erro SQL ao excluir review: " + e.getMessage(), LogType.ERROR);
             return createErrorResponse(500);
         } catch (JSONException | NumberFormatException e) {
             return createErrorResponse(400);
@@ -575,7 +1272,7 @@ public class ClientHandler {
     }
 
 
-    private String handleListUsers() {
+    private JSONObject handleListUsers() {
         try {
             List<User> users = userDAO.listAllUsers();
             JSONArray usersJson = new JSONArray();
@@ -587,14 +1284,14 @@ public class ClientHandler {
             }
             JSONObject response = createSuccessResponse("200");
             response.put("usuarios", usersJson);
-            return response.toString();
+            return response;
         } catch (SQLException e) {
-            controller.log("Erro SQL ao listar usuários: " + e.getMessage(), ServerController.LogType.ERROR);
+            logger.log("Erro SQL ao listar usuários: " + e.getMessage(), LogType.ERROR);
             return createErrorResponse(500);
         }
     }
 
-    private String handleAdminEditUser(JSONObject request) {
+    private JSONObject handleAdminEditUser(JSONObject request) {
         try {
             int userId = Integer.parseInt(request.getString("id"));
             String newPassword = request.getJSONObject("usuario").getString("senha");
@@ -605,12 +1302,12 @@ public class ClientHandler {
             }
 
             if (userDAO.updateUserPasswordById(userId, newPassword)) {
-                return createSuccessResponse("200").toString();
+                return createSuccessResponse("200");
             } else {
                 return createErrorResponse(404);
             }
         } catch (SQLException e) {
-            controller.log("Erro SQL ao admin editar usuário: " + e.getMessage(), ServerController.LogType.ERROR);
+            logger.log("Erro SQL ao admin editar usuário: " + e.getMessage(), LogType.ERROR);
             return createErrorResponse(500);
         } catch (JSONException | NumberFormatException e) {
             return createErrorResponse(400);
@@ -618,7 +1315,7 @@ public class ClientHandler {
     }
 
     // --- MÉTODO COM DESCONEXÃO FORÇADA ---
-    private String handleAdminDeleteUser(JSONObject request) {
+    private JSONObject handleAdminDeleteUser(JSONObject request) {
         try {
             int userId = Integer.parseInt(request.getString("id"));
 
@@ -627,20 +1324,17 @@ public class ClientHandler {
                 return createErrorResponse(403);
             }
 
-            // Guardar nome para desconectar depois
-            String deletedUsername = (userToDelete != null) ? userToDelete.getNome() : null;
-
+            List<Review> reviews = reviewDAO.findReviewsByUserId(userId);
             if (userDAO.deleteUserById(userId)) {
-                // CORREÇÃO: Desconectar o utilizador se ele estiver online
-                if (deletedUsername != null) {
-                    server.disconnectUser(deletedUsername);
-                }
-                return createSuccessResponse("200").toString();
+                publishReviewsRemoved(reviews);
+                // Desconecta todas as sessões do usuário que estiverem abertas
+                server.disconnectUser(userId, this);
+                return createSuccessResponse("200");
             } else {
                 return createErrorResponse(404);
             }
         } catch (SQLException e) {
-            controller.log("Erro SQL ao admin excluir usuário: " + e.getMessage(), ServerController.LogType.ERROR);
+            logger.log("Erro SQL ao admin excluir usuário: " + e.getMessage(), LogType.ERROR);
             return createErrorResponse(500);
         } catch (JSONException | NumberFormatException e) {
             return createErrorResponse(400);
@@ -648,9 +1342,173 @@ public class ClientHandler {
     }
     // -------------------------------------
 
-    private String handleLogout() {
-        this.needsToClose = true;
-        return createSuccessResponse("200").toString();
+    private JSONObject handleLogout(RequestContext ctx) {
+        revokeSession();
+        ctx.closeAfterResponse = true;
+        return createSuccessResponse("200");
+    }
+
+    // Com "id_filme" a conexão passa a receber os eventos daquele filme (reviews, nota, edição e exclusão);
+    // sem ele, os do catálogo (filmes criados, editados e excluídos e mudanças de nota de qualquer filme)
+    // "politica" (opcional) escolhe, para esta conexão, o que acontece com os eventos quando ela fica para trás:
+    // "agrupar" retém e mantém só o mais novo de cada filme/review, "descartar" joga fora
+    private JSONObject handleSubscribe(JSONObject request) {
+        SubscriptionRegistry subscriptions = server.getSubscriptions();
+        String policy = request.optString("politica", "");
+        switch (policy) {
+            case "" -> {
+            }
+            case "agrupar" -> slowConsumerPolicy = ServerConfig.SlowConsumerPolicy.COALESCE;
+            case "descartar" -> slowConsumerPolicy = ServerConfig.SlowConsumerPolicy.DROP;
+            default -> {
+                return createErrorResponse(405);
+            }
+        }
+        if (!request.has("id_filme")) {
+            catalogSubscribed = true;
+            subscriptions.subscribeCatalog(this);
+            // Se a conexão fechou enquanto inscrevia, o closeConnection pode já ter passado
+            if (closed.get()) {
+                subscriptions.unsubscribeCatalog(this);
+            }
+            return createSuccessResponse("200");
+        }
+        try {
+            int movieId = optInteger(request, "id_filme");
+            if (!subscribedMovies.contains(movieId) && subscribedMovies.size() >= MAX_MOVIE_SUBSCRIPTIONS) {
+                return createErrorResponse(429, "Erro: Limite de inscrições por conexão atingido");
+            }
+            // Quem se inscreve acabou de abrir a página do filme, então a checagem costuma sair do cache
+            if (server.getMovieDetailsCache().get(movieId, this::loadMovieDetails) == null) {
+                return createErrorResponse(404);
+            }
+            subscribedMovies.add(movieId);
+            subscriptions.subscribeMovie(movieId, this);
+            if (closed.get()) {
+                subscriptions.unsubscribeMovie(movieId, this);
+            }
+            return createSuccessResponse("200");
+        } catch (NumberFormatException e) {
+            return createErrorResponse(405);
+        } catch (SQLException e) {
+            logger.log("Erro SQL ao inscrever no filme: " + e.getMessage(), LogType.ERROR);
+            return createErrorResponse(500);
+        }
+    }
+
+    private JSONObject handleUnsubscribe(JSONObject request) {
+        SubscriptionRegistry subscriptions = server.getSubscriptions();
+        if (!request.has("id_filme")) {
+            catalogSubscribed = false;
+            subscriptions.unsubscribeCatalog(this);
+            return createSuccessResponse("200");
+        }
+        try {
+            int movieId = optInteger(request, "id_filme");
+            if (subscribedMovies.remove(movieId)) {
+                subscriptions.unsubscribeMovie(movieId, this);
+            }
+            return createSuccessResponse("200");
+        } catch (NumberFormatException e) {
+            return createErrorResponse(405);
+        }
+    }
+
+    private void removeSubscriptions() {
+        SubscriptionRegistry subscriptions = server.getSubscriptions();
+        if (catalogSubscribed) {
+            subscriptions.unsubscribeCatalog(this);
+        }
+        for (int movieId : subscribedMovies) {
+            subscriptions.unsubscribeMovie(movieId, this);
+        }
+        subscribedMovies.clear();
+    }
+
+    // --- Eventos publicados depois de cada escrita que deu certo ---
+    // Cada evento traz o estado já gravado (não a diferença), então perder um não deixa o cliente errado
+    // para sempre. "versao" é a versão do filme em CatalogVersion lida antes de reler o filme: o cliente
+    // descarta um evento com versão menor que a do último que aplicou (dois eventos podem se cruzar).
+
+    private static JSONObject createEvent(String type) {
+        JSONObject event = new JSONObject();
+        event.put("evento", type);
+        return event;
+    }
+
+    private void publishReviewEvent(String type, Review review) {
+        int movieId = review.getIdFilme();
+        if (!server.getSubscriptions().hasMovieSubscribers(movieId)) {
+            return;
+        }
+        JSONObject event = createEvent(type);
+        event.put("id_filme", String.valueOf(movieId));
+        if ("REVIEW_EXCLUIDA".equals(type)) {
+            event.put("id_review", String.valueOf(review.getId()));
+        } else {
+            event.put("review", jsonFromReview(review));
+        }
+        // Só edições seguidas da mesma review podem ser agrupadas; criação e exclusão sempre chegam
+        String coalesceKey = "REVIEW_EDITADA".equals(type) ? "review:" + review.getId() : null;
+        server.getSubscriptions().publishToMovie(movieId, new BroadcastMessage(event, coalesceKey));
+    }
+
+    private void publishRatingChanged(int movieId) {
+        if (!server.getSubscriptions().hasSubscribers(movieId)) {
+            return;
+        }
+        long version = CatalogVersion.ofMovie(movieId);
+        try {
+            Movie movie = movieDAO.findMovieById(movieId);
+            if (movie == null) {
+                return;
+            }
+            JSONObject event = createEvent("NOTA_ALTERADA");
+            event.put("id_filme", String.valueOf(movieId));
+            event.put("nota", formatRating(movie.getNota()));
+            event.put("qtd_avaliacoes", String.valueOf(movie.getQtdAvaliacoes()));
+            event.put("versao", version);
+            server.getSubscriptions().publish(movieId, new BroadcastMessage(event, "nota:" + movieId));
+        } catch (SQLException e) {
+            logger.log("Erro SQL ao publicar nota do filme: " + e.getMessage(), LogType.ERROR);
+        }
+    }
+
+    private void publishMovieSaved(String type, int movieId) {
+        if (!server.getSubscriptions().hasSubscribers(movieId)) {
+            return;
+        }
+        long version = CatalogVersion.ofMovie(movieId);
+        try {
+            Movie movie = movieDAO.findMovieById(movieId);
+            if (movie == null) {
+                return;
+            }
+            JSONObject event = createEvent(type);
+            event.put("filme", jsonFromMovie(movie));
+            event.put("versao", version);
+            String coalesceKey = "FILME_EDITADO".equals(type) ? "filme:" + movieId : null;
+            server.getSubscriptions().publish(movieId, new BroadcastMessage(event, coalesceKey));
+        } catch (SQLException e) {
+            logger.log("Erro SQL ao publicar filme: " + e.getMessage(), LogType.ERROR);
+        }
+    }
+
+    private void publishMovieDeleted(int movieId) {
+        if (!server.getSubscriptions().hasSubscribers(movieId)) {
+            return;
+        }
+        JSONObject event = createEvent("FILME_EXCLUIDO");
+        event.put("id_filme", String.valueOf(movieId));
+        server.getSubscriptions().publish(movieId, new BroadcastMessage(event, null));
+    }
+
+    // Reviews de um usuário excluído somem junto com ele (lidas antes da exclusão)
+    private void publishReviewsRemoved(List<Review> reviews) {
+        for (Review review : reviews) {
+            publishReviewEvent("REVIEW_EXCLUIDA", review);
+            publishRatingChanged(review.getIdFilme());
+        }
     }
 
     private boolean isInvalidUserFields(String username, String password) {
@@ -726,6 +1584,218 @@ public class ClientHandler {
         return review;
     }
 
+    // Filtros e ordenação opcionais da listagem, todos avaliados no banco:
+    // "generos" (lista) com "modo_generos" "qualquer" (padrão) ou "todos", "genero" (um só), "ano_min", "ano_max",
+    // "nota_min", "avaliacoes_min", "diretor", "ordenar_por" (id, nota, avaliacoes, ano, titulo) e "ordem" (asc, desc).
+    private MovieQuery movieQueryFromRequest(JSONObject request) {
+        MovieQuery query = new MovieQuery();
+        JSONArray genres = request.optJSONArray("generos");
+        if (genres != null) {
+            for (int i = 0; i < genres.length(); i++) {
+                query.addGenre(genres.getString(i).trim());
+            }
+        }
+        String genre = request.optString("genero", "").trim();
+        if (!genre.isEmpty()) {
+            query.addGenre(genre);
+        }
+        String genreMode = request.optString("modo_generos", "qualquer");
+        if (!genreMode.equals("qualquer") && !genreMode.equals("todos")) {
+            throw new IllegalArgumentException("modo_generos inválido: " + genreMode);
+        }
+        query.setMatchAllGenres(genreMode.equals("todos"));
+
+        query.setMinYear(optInteger(request, "ano_min"));
+        query.setMaxYear(optInteger(request, "ano_max"));
+        query.setMinReviews(optInteger(request, "avaliacoes_min"));
+        if (request.has("nota_min")) {
+            query.setMinRating(Double.parseDouble(String.valueOf(request.get("nota_min")).trim()));
+        }
+        String director = request.optString("diretor", "").trim();
+        if (!director.isEmpty()) {
+            query.setDirector(director);
+        }
+
+        String sortBy = request.optString("ordenar_por", "id");
+        MovieQuery.SortKey sortKey = switch (sortBy) {
+            case "id" -> MovieQuery.SortKey.ID;
+            case "nota" -> MovieQuery.SortKey.NOTA;
+            case "avaliacoes" -> MovieQuery.SortKey.AVALIACOES;
+            case "ano" -> MovieQuery.SortKey.ANO;
+            case "titulo" -> MovieQuery.SortKey.TITULO;
+            default -> throw new IllegalArgumentException("ordenar_por inválido: " + sortBy);
+        };
+        query.setSortKey(sortKey);
+        String order = request.optString("ordem", sortKey.isDescendingByDefault() ? "desc" : "asc");
+        if (!order.equals("asc") && !order.equals("desc")) {
+            throw new IllegalArgumentException("ordem inválida: " + order);
+        }
+        query.setDescending(order.equals("desc"));
+
+        String cursor = request.optString("cursor", "");
+        if (!cursor.isEmpty()) {
+            query.startAfter(cursor);
+        }
+        return query;
+    }
+
+    // Números do protocolo chegam tanto como texto ("2001") quanto como número
+    private static Integer optInteger(JSONObject request, String key) {
+        if (!request.has(key)) {
+            return null;
+        }
+        return Integer.parseInt(String.valueOf(request.get(key)).trim());
+    }
+
+    // Com "limite" a listagem é paginada no servidor: "cursor" (opcional) vem do "proximo_cursor" da página
+    // anterior. A página seguinte começa depois do último filme entregue na ordenação pedida (keyset),
+    // então o custo é o do tamanho da página, não da posição no catálogo.
+    private JSONObject handleListMoviesPage(JSONObject request, MovieQuery query) {
+        int limit;
+        try {
+            limit = optInteger(request, "limite");
+        } catch (IllegalArgumentException e) {
+            return createErrorResponse(405);
+        }
+        if (limit < 1 || limit > server.getConfig().getMaxPageSize()) {
+            return createErrorResponse(405);
+        }
+
+        try {
+            // Um filme a mais só para saber se existe página seguinte
+            List<Movie> movies = movieDAO.listMovies(query, limit + 1);
+            boolean hasMore = movies.size() > limit;
+            if (hasMore) {
+                movies = movies.subList(0, limit);
+            }
+            JSONArray moviesJson = new JSONArray();
+            for (Movie movie : movies) {
+                moviesJson.put(jsonFromMovie(movie));
+            }
+            JSONObject response = createSuccessResponse("200");
+            response.put("filmes", moviesJson);
+            response.put("total", String.valueOf(movieDAO.countMovies(query)));
+            if (hasMore) {
+                response.put("proximo_cursor", query.cursorAfter(movies.get(movies.size() - 1)));
+            }
+            return response;
+        } catch (SQLException e) {
+            logger.log("Erro SQL ao listar página de filmes: " + e.getMessage(), LogType.ERROR);
+            return createErrorResponse(500);
+        }
+    }
+
+    // Em JSON por linha o catálogo vai direto do banco para buffers do pool, que entram na fila
+    // de escrita conforme enchem; com frames (tamanho na frente) usa o caminho normal acima.
+    // O banco é lido em lotes por chave (como a paginação) e a conexão do pool volta a cada lote:
+    // a espera por um cliente lento (enqueueStreamChunk) nunca acontece com um cursor aberto.
+    private JSONObject streamListMovies(MovieQuery query, RequestContext ctx) {
+        JsonStreamWriter writer = new JsonStreamWriter(server.getBufferPool(), this::enqueueStreamChunk);
+        streamLock.lock();
+        outputLock.lock();
+        streaming = true;
+        try {
+            writer.beginObject();
+            if (ctx.requestId != null) {
+                writer.name(REQUEST_ID_FIELD).rawValue(JSONObject.valueToString(ctx.requestId));
+            }
+            writer.field("status", "200")
+                    .field("mensagem", RESPONSE_MESSAGES.get("200"))
+                    .name("filmes").beginArray();
+            List<Movie> batch;
+            do {
+                batch = movieDAO.listMovies(query, STREAM_BATCH_SIZE);
+                for (Movie movie : batch) {
+                    writeMovie(writer, movie);
+                }
+                if (!batch.isEmpty()) {
+                    query.continueAfter(batch.get(batch.size() - 1));
+                }
+            } while (batch.size() == STREAM_BATCH_SIZE);
+            writer.endArray().endObject().newline();
+            writer.flush();
+        } catch (SQLException | UncheckedIOException e) {
+            if (e instanceof SQLException) {
+                logger.log("Erro SQL ao listar filmes: " + e.getMessage(), LogType.ERROR);
+            }
+            if (writer.discard()) {
+                return createErrorResponse(500);
+            }
+            // Parte da resposta já saiu: não há como completar a linha, então a conexão é encerrada
+            closeAfterFlush = true;
+        } finally {
+            streaming = false;
+            unlockOutput();
+            streamLock.unlock();
+        }
+        server.registerForWrites(this);
+        if (ctx.logged) {
+            logger.logRequest("-> Para", getIdentifier(), "(lista de filmes transmitida, " + writer.getBytesWritten() + " bytes)");
+        }
+        return null;
+    }
+
+    private void writeMovie(JsonStreamWriter writer, Movie movie) {
+        writer.beginObject()
+                .field("id", String.valueOf(movie.getId()))
+                .field("titulo", movie.getTitulo())
+                .field("diretor", movie.getDiretor())
+                .field("ano", movie.getAno())
+                .name("genero").beginArray();
+        for (String genero : movie.getGeneros()) {
+            writer.value(genero);
+        }
+        writer.endArray()
+                .field("sinopse", movie.getSinopse())
+                .field("nota", formatRating(movie.getNota()))
+                .field("qtd_avaliacoes", String.valueOf(movie.getQtdAvaliacoes()))
+                .endObject();
+    }
+
+    // Chamado com outputLock na mão. Acima da marca alta o worker (virtual thread) espera o envio
+    // baixar até a marca baixa; se a conexão cair no meio, a transmissão é abortada.
+    private void enqueueStreamChunk(ByteBuffer buffer) {
+        if (closed.get()) {
+            server.getBufferPool().release(buffer);
+            throw new UncheckedIOException(new IOException("Conexão encerrada durante a transmissão."));
+        }
+        enqueueOutput(buffer);
+        server.registerForWrites(this);
+        ServerConfig config = server.getConfig();
+        if (pendingWriteBytes.get() > config.getWriteHighWatermark()) {
+            awaitStreamDrained(config);
+        }
+    }
+
+    // O await solta o outputLock; o selector sinaliza em updateInterestOps ao chegar na marca baixa ou em
+    // closeConnection. O prazo é o mesmo da leitura pausada (maxBackpressureMillis).
+    private void awaitStreamDrained(ServerConfig config) {
+        long timeout = config.getMaxBackpressureMillis();
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeout);
+        streamWaiting = true;
+        try {
+            while (pendingWriteBytes.get() > config.getWriteLowWatermark() && !closed.get()) {
+                if (timeout <= 0) {
+                    streamDrained.await();
+                } else if (remaining > 0) {
+                    remaining = streamDrained.awaitNanos(remaining);
+                } else {
+                    throw new UncheckedIOException(new IOException("Cliente não consumiu a transmissão no prazo."));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new IOException("Transmissão interrompida.", e));
+        } finally {
+            streamWaiting = false;
+        }
+    }
+
+    // Mesmo resultado de String.format("%.1f") (HALF_UP sobre a representação decimal curta), sem o Formatter
+    private static String formatRating(double nota) {
+        return BigDecimal.valueOf(nota).setScale(1, RoundingMode.HALF_UP).toPlainString();
+    }
+
     private JSONObject jsonFromMovie(Movie movie) {
         JSONObject movieJson = new JSONObject();
         movieJson.put("id", String.valueOf(movie.getId()));
@@ -734,7 +1804,7 @@ public class ClientHandler {
         movieJson.put("ano", movie.getAno());
         movieJson.put("genero", new JSONArray(movie.getGeneros()));
         movieJson.put("sinopse", movie.getSinopse());
-        movieJson.put("nota", String.format("%.1f", movie.getNota()).replace(",","."));
+        movieJson.put("nota", formatRating(movie.getNota()));
         movieJson.put("qtd_avaliacoes", String.valueOf(movie.getQtdAvaliacoes()));
         return movieJson;
     }
@@ -753,20 +1823,20 @@ public class ClientHandler {
     }
 
 
-    private String createErrorResponse(int status, String customMessage) {
+    private JSONObject createErrorResponse(int status, String customMessage) {
         JSONObject errorResponse = new JSONObject();
         errorResponse.put("status", String.valueOf(status));
         errorResponse.put("mensagem", customMessage);
-        return errorResponse.toString();
+        return errorResponse;
     }
 
 
-    private String createErrorResponse(int status) {
+    private JSONObject createErrorResponse(int status) {
         String statusCode = String.valueOf(status);
         JSONObject errorResponse = new JSONObject();
         errorResponse.put("status", statusCode);
         errorResponse.put("mensagem", RESPONSE_MESSAGES.getOrDefault(statusCode, "Erro: Erro desconhecido"));
-        return errorResponse.toString();
+        return errorResponse;
     }
 
     private JSONObject createSuccessResponse(String status) {
@@ -777,8 +1847,20 @@ public class ClientHandler {
     }
 
     public void closeConnection() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
         server.removeClient(this);
-        controller.log("Conexão com " + getIdentifier() + " fechada.", ServerController.LogType.DISCONNECTION);
+        Session current = session;
+        if (current != null) {
+            server.unregisterUserConnection(current.principal().userId(), this);
+        }
+        removeSubscriptions();
+        if (streamWaiting) {
+            signalStreamDrained();
+        }
+        loop.onClientClosed();
+        logger.log("Conexão com " + getIdentifier() + " fechada.", LogType.DISCONNECTION);
     }
 
     public String getIdentifier() {
@@ -807,4 +1889,26 @@ public class ClientHandler {
     public SocketChannel getChannel() {
         return channel;
     }
+
+    // Devolve o buffer de leitura ao pool; só a thread do selector lê com o framer
+    void releaseBuffers() {
+        framer.release();
+        for (int i = inFlightOffset; i < inFlightCount; i++) {
+            releaseIfPooled(inFlight[i]);
+        }
+        Arrays.fill(inFlight, null);
+        ByteBuffer queued;
+        while ((queued = writeQueue.poll()) != null) {
+            releaseIfPooled(queued);
+        }
+        deferredEvents.clear();
+        synchronized (parkedEvents) {
+            parkedEvents.clear();
+        }
+        finishInFlight();
+    }
+
+    public SelectorLoop getLoop() {
+        return loop;
+    }
 }
\ No newline at end of file
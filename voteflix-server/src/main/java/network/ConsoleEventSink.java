@@ -0,0 +1,32 @@
+package network;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Sink do modo headless: o que iria para a tela vai para stdout/stderr
+public class ConsoleEventSink implements ServerEventSink {
+
+    private final DateTimeFormatter dtf = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private final Set<String> activeUsers = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void log(String message, LogType type) {
+        String line = "[" + dtf.format(LocalDateTime.now()) + "] " + type + " " + message;
+        if (type == LogType.ERROR) {
+            System.err.println(line);
+        } else {
+            System.out.println(line);
+        }
+    }
+
+    @Override
+    public void updateActiveUsers(String username, boolean isActive) {
+        boolean changed = isActive ? activeUsers.add(username) : activeUsers.remove(username);
+        if (changed) {
+            log((isActive ? "Usuário ativo: " : "Usuário saiu: ") + username
+                    + " (" + activeUsers.size() + " ativos)", LogType.INFO);
+        }
+    }
+}
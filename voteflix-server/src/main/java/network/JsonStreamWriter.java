@@ -0,0 +1,171 @@
+package network;
+
+import protocol.JsonText;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+// Gera JSON token a token direto em buffers do pool, em UTF-8. Cada buffer cheio vai para o "sink"
+// (a fila de escrita da conexão), então a memória usada não depende do tamanho da resposta.
+final class JsonStreamWriter {
+
+    private static final int MAX_DEPTH = 32;
+
+    private final BufferPool pool;
+    private final Consumer<ByteBuffer> sink;
+    private ByteBuffer current;
+    // Strings são escapadas aqui (JsonText) e depois copiadas para os buffers do pool
+    private byte[] scratch = new byte[256];
+    private long bytesEmitted;
+
+    // needsComma[depth]: o próximo valor/campo neste nível precisa de vírgula antes
+    private final boolean[] needsComma = new boolean[MAX_DEPTH];
+    private int depth;
+    private boolean afterName;
+
+    JsonStreamWriter(BufferPool pool, Consumer<ByteBuffer> sink) {
+        this.pool = pool;
+        this.sink = sink;
+    }
+
+    JsonStreamWriter beginObject() {
+        beforeValue();
+        writeByte('{');
+        needsComma[++depth] = false;
+        return this;
+    }
+
+    JsonStreamWriter endObject() {
+        depth--;
+        writeByte('}');
+        return this;
+    }
+
+    JsonStreamWriter beginArray() {
+        beforeValue();
+        writeByte('[');
+        needsComma[++depth] = false;
+        return this;
+    }
+
+    JsonStreamWriter endArray() {
+        depth--;
+        writeByte(']');
+        return this;
+    }
+
+    JsonStreamWriter name(String name) {
+        if (needsComma[depth]) {
+            writeByte(',');
+        }
+        needsComma[depth] = true;
+        writeString(name);
+        writeByte(':');
+        afterName = true;
+        return this;
+    }
+
+    JsonStreamWriter value(String value) {
+        beforeValue();
+        if (value == null) {
+            writeAscii("null");
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    // Valor já serializado (ex.: JSONObject.valueToString); precisa ser JSON válido
+    JsonStreamWriter rawValue(String json) {
+        beforeValue();
+        writeAscii(json);
+        return this;
+    }
+
+    JsonStreamWriter field(String name, String value) {
+        return name(name).value(value);
+    }
+
+    void newline() {
+        writeByte('\n');
+    }
+
+    private void beforeValue() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (needsComma[depth]) {
+            writeByte(',');
+        }
+        needsComma[depth] = true;
+    }
+
+    private void writeString(String s) {
+        int max = JsonText.maxEncodedLength(s);
+        if (scratch.length < max) {
+            scratch = new byte[Math.max(scratch.length * 2, max)];
+        }
+        writeBytes(scratch, JsonText.writeString(s, scratch, 0));
+    }
+
+    private void writeBytes(byte[] bytes, int length) {
+        int offset = 0;
+        while (offset < length) {
+            if (current == null) {
+                current = pool.acquire();
+            } else if (!current.hasRemaining()) {
+                emit();
+                current = pool.acquire();
+            }
+            int n = Math.min(current.remaining(), length - offset);
+            current.put(bytes, offset, n);
+            offset += n;
+        }
+    }
+
+    private void writeAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            writeByte(s.charAt(i));
+        }
+    }
+
+    private void writeByte(int b) {
+        if (current == null) {
+            current = pool.acquire();
+        } else if (!current.hasRemaining()) {
+            emit();
+            current = pool.acquire();
+        }
+        current.put((byte) b);
+    }
+
+    private void emit() {
+        current.flip();
+        bytesEmitted += current.remaining();
+        ByteBuffer full = current;
+        current = null;
+        sink.accept(full);
+    }
+
+    // Entrega o que sobrou no buffer atual
+    void flush() {
+        if (current != null && current.position() > 0) {
+            emit();
+        }
+    }
+
+    // Descarta o que ainda não foi entregue, devolvendo o buffer atual ao pool.
+    // True se nada chegou ao sink, ou seja, ainda dá para responder outra coisa no lugar.
+    boolean discard() {
+        if (current != null) {
+            pool.release(current);
+            current = null;
+        }
+        return bytesEmitted == 0;
+    }
+
+    long getBytesWritten() {
+        return bytesEmitted + (current != null ? current.position() : 0);
+    }
+}
@@ -0,0 +1,190 @@
+package network;
+
+import protocol.FrameCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+// Separa mensagens direto nos bytes do buffer emprestado do pool; uma conexão ociosa não segura buffer nenhum.
+// Por padrão são linhas terminadas em '\n'; depois do HELLO podem ser frames com tamanho na frente
+// (ver FrameCodec), entregues como flags + payload. A decodificação fica para a thread do worker.
+public class LineFramer {
+    private static final byte NEWLINE = '\n';
+
+    private final BufferPool pool;
+    private ByteBuffer buffer;      // em modo escrita; null quando não há bytes pendentes
+    private int scannedBytes;       // bytes no início do buffer já verificados sem '\n'
+    private byte[] overflow;        // início de uma linha maior que um buffer
+    private int overflowLength;
+
+    // Modo com tamanho na frente; trocado pelo worker do HELLO enquanto o cliente aguarda a resposta
+    private volatile boolean lengthPrefixed;
+    // Frame em montagem: cresce conforme os bytes chegam, até o tamanho declarado. Alocar tudo ao ler
+    // o cabeçalho deixaria um cliente que só manda cabeçalhos prender maxFrameLength por conexão.
+    private static final int INITIAL_PARTIAL_CAPACITY = 4096;
+    private byte[] partialFrame;
+    private int partialFilled;
+    private int declaredLength;     // tamanho declarado do frame em montagem (ou recusado)
+
+    public LineFramer(BufferPool pool) {
+        this.pool = pool;
+    }
+
+    public void enableLengthPrefix() {
+        lengthPrefixed = true;
+    }
+
+    public boolean isLengthPrefixed() {
+        return lengthPrefixed;
+    }
+
+    // Retorna -1 quando o cliente fechou a conexão
+    public int readFrom(ReadableByteChannel channel, Consumer<byte[]> sink, int maxFrameLength) throws IOException {
+        if (buffer == null) {
+            buffer = pool.acquire();
+            scannedBytes = 0;
+        }
+
+        int bytesRead = channel.read(buffer);
+        if (bytesRead <= 0) {
+            if (!hasPartialFrame()) {
+                release();
+            }
+            return bytesRead;
+        }
+
+        buffer.flip();
+        if (lengthPrefixed) {
+            splitFrames(sink, maxFrameLength);
+        } else {
+            splitLines(sink);
+        }
+        return bytesRead;
+    }
+
+    private void splitLines(Consumer<byte[]> sink) {
+        int frameStart = 0;
+        for (int i = scannedBytes; i < buffer.limit(); i++) {
+            if (buffer.get(i) == NEWLINE) {
+                emit(frameStart, i, sink);
+                frameStart = i + 1;
+            }
+        }
+
+        int remaining = buffer.limit() - frameStart;
+        if (remaining == 0 && overflowLength == 0) {
+            release();
+        } else if (frameStart == 0 && remaining == buffer.capacity()) {
+            // Linha não cabe no buffer: guarda o pedaço e reaproveita o buffer inteiro
+            appendToOverflow(remaining);
+            buffer.clear();
+            scannedBytes = 0;
+        } else {
+            buffer.position(frameStart);
+            buffer.compact();
+            scannedBytes = remaining;
+        }
+    }
+
+    private void splitFrames(Consumer<byte[]> sink, int maxFrameLength) {
+        int position = 0;
+        int limit = buffer.limit();
+        while (true) {
+            if (partialFrame != null) {
+                int n = Math.min(declaredLength - partialFilled, limit - position);
+                if (partialFilled + n > partialFrame.length) {
+                    // Nunca passa do declarado: completo, o array tem exatamente o tamanho do frame
+                    int grown = Math.min(declaredLength, Math.max(partialFrame.length * 2, partialFilled + n));
+                    partialFrame = Arrays.copyOf(partialFrame, grown);
+                }
+                buffer.get(position, partialFrame, partialFilled, n);
+                position += n;
+                partialFilled += n;
+                if (partialFilled < declaredLength) {
+                    break;
+                }
+                sink.accept(partialFrame);
+                partialFrame = null;
+                declaredLength = 0;
+                continue;
+            }
+            if (limit - position < FrameCodec.LENGTH_FIELD_SIZE) {
+                break;
+            }
+            int length = buffer.getInt(position);
+            if (length <= 0 || length > maxFrameLength) {
+                // Não aloca nada: getPendingBytes() expõe o tamanho e o ClientHandler derruba a conexão
+                declaredLength = length <= 0 ? Integer.MAX_VALUE : length;
+                break;
+            }
+            position += FrameCodec.LENGTH_FIELD_SIZE;
+            partialFrame = new byte[Math.min(length, Math.max(INITIAL_PARTIAL_CAPACITY, limit - position))];
+            partialFilled = 0;
+            declaredLength = length;
+        }
+
+        int remaining = limit - position;
+        if (remaining == 0 && partialFrame == null) {
+            release();
+        } else {
+            buffer.position(position);
+            buffer.compact();
+        }
+    }
+
+    private void emit(int start, int end, Consumer<byte[]> sink) {
+        int length = end - start;
+        byte[] frame;
+        if (overflowLength > 0) {
+            frame = Arrays.copyOf(overflow, overflowLength + length);
+            buffer.get(start, frame, overflowLength, length);
+            overflow = null;
+            overflowLength = 0;
+        } else {
+            frame = new byte[length];
+            buffer.get(start, frame, 0, length);
+        }
+        if (frame.length > 0) {
+            sink.accept(frame);
+        }
+    }
+
+    private void appendToOverflow(int length) {
+        if (overflow == null) {
+            overflow = new byte[Math.max(length * 2, 1024)];
+        } else if (overflowLength + length > overflow.length) {
+            overflow = Arrays.copyOf(overflow, Math.max(overflow.length * 2, overflowLength + length));
+        }
+        buffer.get(0, overflow, overflowLength, length);
+        overflowLength += length;
+    }
+
+    public boolean hasPartialFrame() {
+        return overflowLength > 0 || partialFrame != null || declaredLength != 0
+                || (buffer != null && buffer.position() > 0);
+    }
+
+    public int getPendingBytes() {
+        if (declaredLength != 0) {
+            return declaredLength;
+        }
+        return overflowLength + (buffer != null ? buffer.position() : 0);
+    }
+
+    // Deve ser chamado pela thread do selector dona da conexão
+    public void release() {
+        if (buffer != null) {
+            pool.release(buffer);
+            buffer = null;
+        }
+        scannedBytes = 0;
+        overflow = null;
+        overflowLength = 0;
+        partialFrame = null;
+        partialFilled = 0;
+        declaredLength = 0;
+    }
+}
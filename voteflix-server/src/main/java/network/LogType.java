@@ -0,0 +1,9 @@
+package network;
+
+public enum LogType {
+    INFO,
+    CONNECTION,
+    DISCONNECTION,
+    ERROR,
+    REQUEST
+}
@@ -0,0 +1,84 @@
+package network;
+
+import dao.CatalogVersion;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Cache LRU da página de um filme (BUSCAR_FILME_ID): o filme e as reviews já em JSON, sem o
+// "isOwnReview", que depende de quem pede. Cada entrada guarda a versão do filme em CatalogVersion
+// de quando foi montada; qualquer escrita naquele filme (inclusive nas suas reviews) muda a versão e
+// a entrada deixa de valer, sem afetar os outros filmes.
+final class MovieDetailsCache {
+
+    interface Loader {
+        // null se o filme não existe (não vai para o cache)
+        Details load(int movieId) throws SQLException;
+    }
+
+    // Os JSONObject aqui são compartilhados entre requisições e nunca alterados depois de montados
+    record Details(JSONObject movie, JSONObject[] reviews, int[] reviewerIds) {
+
+        // Só a review do próprio usuário (no máximo uma por filme) é copiada para receber "true"
+        JSONArray reviewsFor(int requesterId) {
+            JSONArray array = new JSONArray();
+            for (int i = 0; i < reviews.length; i++) {
+                if (reviewerIds[i] == requesterId) {
+                    JSONObject own = new JSONObject(reviews[i], JSONObject.getNames(reviews[i]));
+                    own.put("isOwnReview", true);
+                    array.put(own);
+                } else {
+                    array.put(reviews[i]);
+                }
+            }
+            return array;
+        }
+    }
+
+    private record Entry(long version, Details details) {
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Integer, Entry> entries;
+
+    MovieDetailsCache(int capacity) {
+        // accessOrder = true: cada get move a entrada para o fim, e a mais antiga sai primeiro
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    Details get(int movieId, Loader loader) throws SQLException {
+        // Lida antes da consulta: uma escrita durante a montagem deixa a entrada já vencida
+        long version = CatalogVersion.ofMovie(movieId);
+        Entry entry;
+        lock.lock();
+        try {
+            entry = entries.get(movieId);
+        } finally {
+            lock.unlock();
+        }
+        if (entry != null && entry.version() == version) {
+            return entry.details();
+        }
+        Details details = loader.load(movieId);
+        lock.lock();
+        try {
+            if (details == null) {
+                entries.remove(movieId);
+            } else {
+                entries.put(movieId, new Entry(version, details));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return details;
+    }
+}
@@ -0,0 +1,45 @@
+package network;
+
+import dao.CatalogVersion;
+import org.json.JSONObject;
+import protocol.PreparedMessage;
+
+import java.sql.SQLException;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Resposta da lista completa de filmes já serializada, válida enquanto a versão do catálogo não mudar.
+// Requisições simultâneas usam os mesmos bytes; quando a versão muda, só uma thread remonta a resposta
+// e as outras esperam por ela em vez de consultarem o banco ao mesmo tempo.
+final class MovieListCache {
+
+    interface Loader {
+        JSONObject load() throws SQLException;
+    }
+
+    private record Entry(long version, PreparedMessage message) {
+    }
+
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private volatile Entry entry;
+
+    PreparedMessage get(Loader loader) throws SQLException {
+        Entry current = entry;
+        if (current != null && current.version() == CatalogVersion.current()) {
+            return current.message();
+        }
+        rebuildLock.lock();
+        try {
+            // A versão é lida antes da consulta: uma alteração durante a montagem deixa a entrada já vencida
+            long version = CatalogVersion.current();
+            current = entry;
+            if (current != null && current.version() == version) {
+                return current.message();
+            }
+            PreparedMessage message = new PreparedMessage(loader.load());
+            entry = new Entry(version, message);
+            return message;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package network;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Token buckets por chave (IP antes do login, id do usuário depois).
+// Cada balde é um único AtomicLong no formato GCRA, então consumir é só um CAS, sem locks.
+public class RateLimiter {
+
+    private static final int MAX_TRACKED_KEYS = 100_000;
+
+    private static final class TokenBucket {
+        // "Theoretical arrival time": instante em que o balde estaria cheio de novo
+        private final AtomicLong fullAt = new AtomicLong(Long.MIN_VALUE);
+
+        boolean tryAcquire(int cost, long nanosPerToken, long burstNanos, long now) {
+            while (true) {
+                long current = fullAt.get();
+                long next = Math.max(current, now) + cost * nanosPerToken;
+                if (next - now > burstNanos) {
+                    return false;
+                }
+                if (fullAt.compareAndSet(current, next)) {
+                    return true;
+                }
+            }
+        }
+
+        boolean isFull(long now) {
+            return fullAt.get() <= now;
+        }
+    }
+
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final int maxTrackedKeys;
+    private final AtomicLong nextSweepAt = new AtomicLong(System.nanoTime());
+
+    public RateLimiter(double tokensPerSecond, int burst) {
+        this(tokensPerSecond, burst, MAX_TRACKED_KEYS);
+    }
+
+    RateLimiter(double tokensPerSecond, int burst, int maxTrackedKeys) {
+        this.nanosPerToken = (long) (1_000_000_000L / tokensPerSecond);
+        this.burstNanos = nanosPerToken * burst;
+        this.maxTrackedKeys = maxTrackedKeys;
+    }
+
+    public boolean tryAcquire(String key, int cost) {
+        long now = System.nanoTime();
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= maxTrackedKeys && !sweep(now)) {
+                // Tabela cheia de baldes em uso: a chave nova é recusada até uma varredura abrir espaço
+                return false;
+            }
+            bucket = buckets.computeIfAbsent(key, k -> new TokenBucket());
+        }
+        return bucket.tryAcquire(cost, nanosPerToken, burstNanos, now);
+    }
+
+    // Baldes cheios equivalem a baldes novos e podem ser descartados. A varredura é O(n), então roda no
+    // máximo uma vez a cada burstNanos (o tempo para qualquer balde encher de novo); o CAS escolhe uma
+    // única thread e as outras seguem sem varrer. Devolve se sobrou espaço para uma chave nova.
+    private boolean sweep(long now) {
+        long next = nextSweepAt.get();
+        if (now - next >= 0 && nextSweepAt.compareAndSet(next, now + burstNanos)) {
+            buckets.values().removeIf(bucket -> bucket.isFull(now));
+        }
+        return buckets.size() < maxTrackedKeys;
+    }
+
+    int trackedKeys() {
+        return buckets.size();
+    }
+}
@@ -0,0 +1,241 @@
+package network;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Um reactor: dono de um Selector e de todos os ClientHandlers registrados nele
+public class SelectorLoop implements Runnable {
+    private final int index;
+    private final Server server;
+    private final AsyncLogger logger;
+    private final Selector selector;
+    private volatile boolean running = true;
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private static final int WHEEL_SIZE = 512;
+    private final TimingWheel<SelectionKey> timeouts;
+
+    private final Queue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<>();
+    // Handlers com respostas novas, aguardando o selector ligar OP_WRITE
+    private final Queue<ClientHandler> pendingWriteRegistrations = new ConcurrentLinkedQueue<>();
+    // Conexões que outra thread mandou fechar (ex.: usuário excluído), aguardando o selector
+    private final Queue<ClientHandler> pendingCloses = new ConcurrentLinkedQueue<>();
+
+    public SelectorLoop(int index, Server server) throws IOException {
+        this.index = index;
+        this.server = server;
+        this.logger = server.getLogger();
+        this.selector = Selector.open();
+        this.timeouts = new TimingWheel<>(WHEEL_SIZE, server.getConfig().getTimerTickMillis(), System.currentTimeMillis());
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select(timeouts.getTickMillis());
+                if (!running) break;
+
+                registerPendingChannels();
+                processPendingWriteRegistrations();
+                processPendingCloses();
+                timeouts.advance(System.currentTimeMillis(), this::checkTimeout);
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    if (!key.isValid()) continue;
+
+                    // Uma falha inesperada em uma conexão derruba só ela, não o reactor e as demais
+                    try {
+                        if (key.isReadable()) {
+                            handleRead(key);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            handleWrite(key);
+                        }
+                    } catch (RuntimeException e) {
+                        ClientHandler handler = (ClientHandler) key.attachment();
+                        logger.log("Erro inesperado na conexão " + (handler != null ? handler.getIdentifier() : "?")
+                                + ": " + e, LogType.ERROR);
+                        disconnectClient(key);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.log("Erro no loop do selector " + index + ": " + e.getMessage(), LogType.ERROR);
+            }
+        }
+        closeAll();
+    }
+
+    // Chamado pela thread acceptor
+    public void register(SocketChannel channel) {
+        connectionCount.incrementAndGet();
+        pendingChannels.add(channel);
+        selector.wakeup();
+    }
+
+    private void registerPendingChannels() {
+        SocketChannel channel;
+        while ((channel = pendingChannels.poll()) != null) {
+            try {
+                ClientHandler handler = new ClientHandler(channel, server, this);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ, handler);
+                long now = System.currentTimeMillis();
+                timeouts.schedule(key, handler.nextDeadline(now));
+                server.addClient(handler);
+                logger.log("Novo cliente conectado: " + channel.getRemoteAddress(), LogType.CONNECTION);
+            } catch (IOException e) {
+                connectionCount.decrementAndGet();
+                logger.log("Erro ao registrar nova conexão: " + e.getMessage(), LogType.ERROR);
+                try {
+                    channel.close();
+                } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    private void handleRead(SelectionKey key) {
+        ClientHandler handler = (ClientHandler) key.attachment();
+        try {
+            handler.handleRead(key);
+        } catch (IOException e) {
+            logger.log("Cliente desconectado (read): " + handler.getIdentifier(), LogType.DISCONNECTION);
+            disconnectClient(key);
+        }
+    }
+
+    private void handleWrite(SelectionKey key) {
+        ClientHandler handler = (ClientHandler) key.attachment();
+        try {
+            boolean keepAlive = handler.handleWrite(key);
+
+            if (!keepAlive) {
+                logger.log("Cliente desconectado (solicitado): " + handler.getIdentifier(), LogType.DISCONNECTION);
+                disconnectClient(key);
+            }
+        } catch (IOException e) {
+            logger.log("Cliente desconectado (erro de write): " + handler.getIdentifier(), LogType.ERROR);
+            disconnectClient(key);
+        }
+    }
+
+    // Pode ser chamado de qualquer thread: só o selector altera os interestOps
+    public void registerForWrites(ClientHandler handler) {
+        pendingWriteRegistrations.add(handler);
+        selector.wakeup();
+    }
+
+    private void processPendingWriteRegistrations() {
+        ClientHandler handler;
+        while ((handler = pendingWriteRegistrations.poll()) != null) {
+            SocketChannel channel = handler.getChannel();
+            try {
+                if (channel.isOpen()) {
+                    SelectionKey key = channel.keyFor(selector);
+                    if (key != null && key.isValid()) {
+                        handler.updateInterestOps(key);
+                        // A resposta que pede o fechamento pode ter sido escrita antes de o pedido ser visto
+                        if (handler.isFlushedForClose()) {
+                            logger.log("Cliente desconectado (solicitado): " + handler.getIdentifier(), LogType.DISCONNECTION);
+                            disconnectClient(key);
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                logger.log("Erro ao registrar para escrita: " + e.getMessage(), LogType.ERROR);
+                disconnectClient(channel.keyFor(selector));
+            }
+        }
+    }
+
+    // Pode ser chamado de qualquer thread: o handler é desmontado pelo selector dono, que é quem
+    // mexe no framer e nos buffers de escrita, e os buffers voltam ao pool em disconnectClient
+    public void requestClose(ClientHandler handler) {
+        pendingCloses.add(handler);
+        selector.wakeup();
+    }
+
+    private void processPendingCloses() {
+        ClientHandler handler;
+        while ((handler = pendingCloses.poll()) != null) {
+            // null: a conexão já foi desmontada por aqui (cliente saiu, timeout ou erro)
+            SelectionKey key = handler.getChannel().keyFor(selector);
+            if (key != null && key.isValid()) {
+                disconnectClient(key);
+            }
+        }
+    }
+
+    // Chamado pela roda de tempo. O prazo é recalculado aqui (reagendamento preguiçoso),
+    // então atividade na conexão não precisa mexer na roda.
+    private void checkTimeout(SelectionKey key) {
+        if (!key.isValid() || !(key.attachment() instanceof ClientHandler handler)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long deadline = handler.nextDeadline(now);
+        if (deadline > now) {
+            timeouts.schedule(key, deadline);
+            return;
+        }
+        if (handler.isReadPaused()) {
+            server.getMetrics().recordBackpressureDisconnect();
+        } else {
+            server.getMetrics().recordIdleTimeout();
+        }
+        logger.log("Cliente desconectado por timeout (" + handler.getTimeoutState() + "): " + handler.getIdentifier(), LogType.DISCONNECTION);
+        disconnectClient(key);
+    }
+
+    private void disconnectClient(SelectionKey key) {
+        if (key == null) return;
+
+        ClientHandler handler = (ClientHandler) key.attachment();
+        if (handler != null) {
+            handler.closeConnection();
+            handler.releaseBuffers();
+        }
+
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // Ignora, já estamos fechando
+        }
+        key.cancel();
+    }
+
+    // Chamado por ClientHandler.closeConnection, uma única vez por conexão
+    void onClientClosed() {
+        connectionCount.decrementAndGet();
+    }
+
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void closeAll() {
+        try {
+            for (SelectionKey key : selector.keys()) {
+                try {
+                    key.channel().close();
+                } catch (IOException ignored) {}
+            }
+            selector.close();
+        } catch (IOException e) {
+            logger.log("Erro ao fechar selector " + index + ": " + e.getMessage(), LogType.ERROR);
+        }
+    }
+}
@@ -1,181 +1,362 @@
 package network;
 
-import controller.ServerController;
+import dao.MovieDAO;
+import dao.MovieQuery;
+import dao.UserDAO;
+import database.DatabaseConnection;
+import org.json.JSONObject;
+import search.MovieSearchIndex;
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
+import java.net.StandardSocketOptions;
+import java.nio.channels.AsynchronousCloseException;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.sql.SQLException;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Server implements Runnable {
-    private final int port;
-    private final ServerController controller;
+    private final ServerConfig config;
+    private final ServerEventSink events;
+    private final BufferPool bufferPool;
+    private final ServerMetrics metrics = new ServerMetrics();
+    private final AsyncLogger logger;
+    private final RateLimiter ipRateLimiter;
+    private final RateLimiter userRateLimiter;
+    private final MovieSearchIndex searchIndex = new MovieSearchIndex();
+    private final MovieListCache movieListCache = new MovieListCache();
+    private final MovieDetailsCache movieDetailsCache;
+    private final SubscriptionRegistry subscriptions = new SubscriptionRegistry();
     private ServerSocketChannel serverSocketChannel;
-    private Selector selector;
-    private boolean running = true;
+    private SelectorLoop[] loops = new SelectorLoop[0];
+    private Thread metricsReporter;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private volatile boolean running = true;
+    private volatile boolean draining = false;
     private final Set<ClientHandler> activeClients = Collections.synchronizedSet(new HashSet<>());
+    // id do usuário -> conexões autenticadas como ele (um usuário pode ter várias)
+    private final Map<Integer, Set<ClientHandler>> connectionsByUser = new ConcurrentHashMap<>();
 
+    // Requisições são processadas fora do selector; cada uma ganha uma virtual thread
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
 
-    public Server(int port, ServerController controller) {
-        this.port = port;
-        this.controller = controller;
+
+    public Server(int port, ServerEventSink events) {
+        this(new ServerConfig(port), events);
+    }
+
+    public Server(ServerConfig config, ServerEventSink events) {
+        this.config = config;
+        this.events = events;
+        this.logger = new AsyncLogger(events, config);
+        this.bufferPool = new BufferPool(config.getReadBufferSize(), config.getMaxPooledBuffers());
+        this.ipRateLimiter = new RateLimiter(config.getIpTokensPerSecond(), config.getIpBurst());
+        this.userRateLimiter = new RateLimiter(config.getUserTokensPerSecond(), config.getUserBurst());
+        this.movieDetailsCache = new MovieDetailsCache(config.getMovieCacheSize());
     }
 
+    // A thread que executa run() é a acceptor; leitura e escrita ficam com os SelectorLoops
     @Override
     public void run() {
         try {
-            selector = Selector.open();
+            logger.start();
+            loadSearchIndex();
+            loadLiveUsers();
+            startLoops();
+            startMetricsReporter();
+
             serverSocketChannel = ServerSocketChannel.open();
-            serverSocketChannel.bind(new InetSocketAddress(port));
-            serverSocketChannel.configureBlocking(false);
-            serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+            if (config.getReceiveBufferSize() > 0) {
+                serverSocketChannel.setOption(StandardSocketOptions.SO_RCVBUF, config.getReceiveBufferSize());
+            }
+            serverSocketChannel.bind(new InetSocketAddress(config.getPort()), config.getBacklog());
 
-            controller.log("Servidor não-bloqueante iniciado na porta " + port, ServerController.LogType.INFO);
+            logger.log("Servidor não-bloqueante iniciado na porta " + config.getPort()
+                    + " com " + loops.length + " selector(s)", LogType.INFO);
 
-            while (running) {
+            while (running && !draining) {
                 try {
-                    selector.select();
-                    if (!running) break;
-
-                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
-                    while (keys.hasNext()) {
-                        SelectionKey key = keys.next();
-                        keys.remove();
-
-                        if (!key.isValid()) continue;
-
-                        if (key.isAcceptable()) {
-                            handleAccept();
-                        } else if (key.isReadable()) {
-                            handleRead(key);
-                        } else if (key.isWritable()) {
-                            handleWrite(key);
-                        }
+                    SocketChannel socketChannel = serverSocketChannel.accept();
+                    if (getConnectionCount() >= config.getMaxConnections()) {
+                        metrics.recordRejectedConnection();
+                        socketChannel.close();
+                        continue;
                     }
+                    configureChannel(socketChannel);
+                    chooseLoop().register(socketChannel);
+                } catch (AsynchronousCloseException e) {
+                    break;
                 } catch (IOException e) {
-                    controller.log("Erro no loop do selector: " + e.getMessage(), ServerController.LogType.ERROR);
+                    if (draining) {
+                        break;
+                    }
+                    logger.log("Erro ao aceitar nova conexão: " + e.getMessage(), LogType.ERROR);
                 }
             }
         } catch (IOException e) {
-            controller.log("Não foi possível iniciar o servidor na porta " + port + ": " + e.getMessage(), ServerController.LogType.ERROR);
+            logger.log("Não foi possível iniciar o servidor na porta " + config.getPort() + ": " + e.getMessage(), LogType.ERROR);
         } finally {
-            stop();
+            // No desligamento gracioso quem encerra os loops é o shutdown(), depois de esvaziar as filas
+            if (!draining) {
+                stop();
+            }
         }
     }
 
-    private void handleAccept() {
-        try {
-            SocketChannel socketChannel = serverSocketChannel.accept();
-            if (socketChannel != null) {
-                socketChannel.configureBlocking(false);
-                ClientHandler handler = new ClientHandler(socketChannel, controller, this);
-                socketChannel.register(selector, SelectionKey.OP_READ, handler);
-                activeClients.add(handler);
-                controller.log("Novo cliente conectado: " + socketChannel.getRemoteAddress(), ServerController.LogType.CONNECTION);
-            }
-        } catch (IOException e) {
-            controller.log("Erro ao aceitar nova conexão: " + e.getMessage(), ServerController.LogType.ERROR);
+    private void startLoops() throws IOException {
+        loops = new SelectorLoop[config.getSelectorThreads()];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new SelectorLoop(i, this);
+            Thread thread = new Thread(loops[i], "voteflix-selector-" + i);
+            thread.setDaemon(true);
+            thread.start();
         }
     }
 
-    private void handleRead(SelectionKey key) {
-        ClientHandler handler = (ClientHandler) key.attachment();
-        try {
-            handler.handleRead();
-        } catch (IOException e) {
-            controller.log("Cliente desconectado (read): " + handler.getIdentifier(), ServerController.LogType.DISCONNECTION);
-            disconnectClient(key);
+    // Resumo dos contadores no log a cada metricsLogIntervalMillis, só quando algum mudou desde o último
+    private void startMetricsReporter() {
+        long interval = config.getMetricsLogIntervalMillis();
+        if (interval <= 0) {
+            return;
         }
+        metricsReporter = new Thread(() -> {
+            String last = metricsSummary();
+            while (running) {
+                try {
+                    Thread.sleep(interval);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                String summary = metricsSummary();
+                if (!summary.equals(last)) {
+                    logger.log(summary, LogType.INFO);
+                    last = summary;
+                }
+            }
+        }, "voteflix-metrics");
+        metricsReporter.setDaemon(true);
+        metricsReporter.start();
     }
 
-    private void handleWrite(SelectionKey key) {
-        ClientHandler handler = (ClientHandler) key.attachment();
-        try {
-            boolean keepAlive = handler.handleWrite(key);
+    private String metricsSummary() {
+        return "Métricas: " + userConnectionSummary() + ", " + metrics.getBackpressurePauses() + " pausa(s) e "
+                + metrics.getBackpressureDisconnects() + " desconexão(ões) por backpressure, "
+                + metrics.getIdleTimeouts() + " conexão(ões) encerrada(s) por inatividade, "
+                + metrics.getOversizedFrames() + " frame(s) acima do limite, "
+                + metrics.getRateLimitedRequests() + " requisição(ões) barrada(s) pelo limite de taxa, "
+                + metrics.getRejectedConnections() + " conexão(ões) recusada(s) por maxConnections, "
+                + metrics.getDroppedEvents() + " evento(s) descartado(s) e "
+                + metrics.getCoalescedEvents() + " agrupado(s) para consumidores lentos, "
+                + logger.getDroppedCount() + " mensagem(ns) de log descartada(s)";
+    }
+
+    private void configureChannel(SocketChannel socketChannel) throws IOException {
+        socketChannel.configureBlocking(false);
+        socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, config.isTcpNoDelay());
+        if (config.getReceiveBufferSize() > 0) {
+            socketChannel.setOption(StandardSocketOptions.SO_RCVBUF, config.getReceiveBufferSize());
+        }
+        if (config.getSendBufferSize() > 0) {
+            socketChannel.setOption(StandardSocketOptions.SO_SNDBUF, config.getSendBufferSize());
+        }
+    }
 
-            if (!keepAlive) {
-                controller.log("Cliente desconectado (solicitado): " + handler.getIdentifier(), ServerController.LogType.DISCONNECTION);
-                disconnectClient(key);
+    private SelectorLoop chooseLoop() {
+        if (config.getBalanceStrategy() == ServerConfig.BalanceStrategy.LEAST_LOADED) {
+            SelectorLoop best = loops[0];
+            for (SelectorLoop loop : loops) {
+                if (loop.getConnectionCount() < best.getConnectionCount()) {
+                    best = loop;
+                }
             }
-        } catch (IOException e) {
-            controller.log("Cliente desconectado (erro de write): " + handler.getIdentifier(), ServerController.LogType.ERROR);
-            disconnectClient(key);
+            return best;
         }
+        return loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+    }
+
+    public int getConnectionCount() {
+        int total = 0;
+        for (SelectorLoop loop : loops) {
+            total += loop.getConnectionCount();
+        }
+        return total;
+    }
+
+    // Controle de admissão: false quando a chave já gastou o orçamento da operação
+    public boolean admitRequest(String ip, Integer userId, String operacao) {
+        if (!config.isRateLimitEnabled()) {
+            return true;
+        }
+        int cost = config.getOperationCost(operacao);
+        boolean admitted = (userId != null)
+                ? userRateLimiter.tryAcquire("usuario:" + userId, cost)
+                : ipRateLimiter.tryAcquire("ip:" + ip, cost);
+        if (!admitted) {
+            metrics.recordRateLimitedRequest();
+        }
+        return admitted;
     }
 
     public void registerForWrites(ClientHandler handler) {
-        SocketChannel channel = handler.getChannel();
+        handler.getLoop().registerForWrites(handler);
+    }
+
+    // false se o pool já foi desligado; quem chamou responde 503 e desfaz o próprio estado
+    public boolean dispatch(Runnable task) {
         try {
-            if (channel.isOpen()) {
-                SelectionKey key = channel.keyFor(selector);
-                if (key != null && key.isValid()) {
-                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
-                }
+            workers.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            logger.log("Requisição recusada, servidor desligando.", LogType.ERROR);
+            return false;
+        }
+    }
+
+    // Fecha todas as conexões do usuário (exceto "except", que responde e fecha sozinha).
+    // Usa o índice por id em vez de percorrer todos os clientes.
+    public void disconnectUser(int userId, ClientHandler except) {
+        for (ClientHandler target : getUserConnections(userId)) {
+            if (target == except) {
+                continue;
+            }
+            logger.log("Desconectando forçadamente o usuário excluído: " + target.getIdentifier(), LogType.INFO);
+            target.revokeSession();
+            // O fechamento fica com o selector dono da conexão, que também devolve os buffers ao pool
+            target.getLoop().requestClose(target);
+        }
+    }
+
+    // Evento para todas as conexões autenticadas (ex.: aviso de manutenção). É codificado uma vez por
+    // formato de fio e cada conexão recebe só uma visão somente leitura dos mesmos bytes na fila de
+    // escrita; quem está com a fila cheia segue a SlowConsumerPolicy. Devolve quantas conexões receberam.
+    public int broadcast(JSONObject event) {
+        BroadcastMessage message = new BroadcastMessage(event, null);
+        int targets = 0;
+        for (Set<ClientHandler> connections : connectionsByUser.values()) {
+            for (ClientHandler client : connections) {
+                client.pushEvent(message);
+                targets++;
             }
-        } catch (Exception e) {
-            controller.log("Erro ao registrar para escrita: " + e.getMessage(), ServerController.LogType.ERROR);
-            disconnectClient(channel.keyFor(selector));
         }
+        return targets;
     }
 
-    private void disconnectClient(SelectionKey key) {
-        if (key == null) return;
+    // Conexões autenticadas de um usuário (vazio se nenhuma); a visão acompanha entradas e saídas
+    private Set<ClientHandler> getUserConnections(int userId) {
+        Set<ClientHandler> connections = connectionsByUser.get(userId);
+        return connections != null ? Collections.unmodifiableSet(connections) : Set.of();
+    }
 
-        ClientHandler handler = (ClientHandler) key.attachment();
-        if (handler != null) {
-            handler.closeConnection();
+    // Usuários autenticados, conexões deles e o maior número de conexões de um mesmo usuário
+    private String userConnectionSummary() {
+        int users = 0;
+        int connections = 0;
+        int mostPerUser = 0;
+        for (Set<ClientHandler> userConnections : connectionsByUser.values()) {
+            int count = userConnections.size();
+            users++;
+            connections += count;
+            mostPerUser = Math.max(mostPerUser, count);
         }
+        return users + " usuário(s) autenticado(s) em " + connections + " conexão(ões), até "
+                + mostPerUser + " do mesmo usuário";
+    }
+
+    // Mantido pelo ClientHandler ao autenticar (LOGIN ou primeiro token) e ao encerrar a sessão.
+    // O compute deixa a criação e a remoção do conjunto de cada usuário atômicas.
+    void registerUserConnection(int userId, ClientHandler client) {
+        connectionsByUser.compute(userId, (id, connections) -> {
+            if (connections == null) {
+                connections = ConcurrentHashMap.newKeySet();
+            }
+            connections.add(client);
+            return connections;
+        });
+    }
+
+    void unregisterUserConnection(int userId, ClientHandler client) {
+        connectionsByUser.computeIfPresent(userId, (id, connections) -> {
+            connections.remove(client);
+            return connections.isEmpty() ? null : connections;
+        });
+    }
+    // --------------------------------------------------
 
+    // Desligamento gracioso: para de aceitar conexões, recusa requisições novas com 503,
+    // espera as em andamento e o envio das respostas até o prazo e só então fecha tudo
+    public void shutdown(long timeoutMillis) {
+        synchronized (this) {
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        logger.log("Servidor em desligamento: aguardando requisições em andamento...", LogType.INFO);
+        JSONObject notice = new JSONObject();
+        notice.put("evento", "AVISO");
+        notice.put("mensagem", "O servidor está sendo desligado. A conexão será encerrada em instantes.");
+        broadcast(notice);
         try {
-            key.channel().close();
+            if (serverSocketChannel != null && serverSocketChannel.isOpen()) {
+                serverSocketChannel.close();
+            }
         } catch (IOException e) {
-            // Ignora, já estamos fechando
+            logger.log("Erro ao fechar o socket de escuta: " + e.getMessage(), LogType.ERROR);
         }
-        key.cancel();
-    }
 
-    // --- NOVO MÉTODO: Desconectar usuário pelo nome ---
-    public void disconnectUser(String username) {
-        ClientHandler target = null;
+        try {
+            while (countBusyClients() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            int busy = countBusyClients();
+            if (busy > 0) {
+                logger.log("Prazo de desligamento esgotado com " + busy + " conexão(ões) ainda ocupada(s).", LogType.ERROR);
+            }
+            workers.shutdown();
+            workers.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        stop();
+        DatabaseConnection.closeConnection();
+    }
 
-        // 1. Encontrar o cliente na lista thread-safe
+    private int countBusyClients() {
+        int busy = 0;
         synchronized (activeClients) {
             for (ClientHandler client : activeClients) {
-                if (username.equalsIgnoreCase(client.getUsername())) {
-                    target = client;
-                    break;
+                if (!client.isIdle()) {
+                    busy++;
                 }
             }
         }
+        return busy;
+    }
 
-        // 2. Se encontrado, fechar a conexão
-        if (target != null) {
-            try {
-                controller.log("Desconectando forçadamente o usuário excluído: " + username, ServerController.LogType.INFO);
-                target.getChannel().close(); // Fecha o socket
-                target.closeConnection();    // Limpa da lista e atualiza UI
-            } catch (IOException e) {
-                controller.log("Erro ao desconectar usuário forçadamente: " + e.getMessage(), ServerController.LogType.ERROR);
-            }
-        }
+    public boolean isDraining() {
+        return draining;
     }
-    // --------------------------------------------------
 
     public void stop() {
         running = false;
+        workers.shutdownNow();
         try {
-            if (selector != null && selector.isOpen()) {
-                selector.wakeup();
-                selector.close();
-            }
             if (serverSocketChannel != null && serverSocketChannel.isOpen()) {
                 serverSocketChannel.close();
             }
+            for (SelectorLoop loop : loops) {
+                loop.stop();
+            }
             synchronized (activeClients) {
                 for (ClientHandler client : activeClients) {
                     try {
@@ -184,21 +365,91 @@ public class Server implements Runnable {
                 }
                 activeClients.clear();
             }
-            controller.log("Servidor sendo desligado...", ServerController.LogType.INFO);
+            connectionsByUser.clear();
+            subscriptions.clear();
+            if (metricsReporter != null) {
+                metricsReporter.interrupt();
+            }
+            logger.log(metricsSummary(), LogType.INFO);
+            logger.log("Servidor sendo desligado...", LogType.INFO);
         } catch (IOException e) {
-            controller.log("Erro ao parar o servidor: " + e.getMessage(), ServerController.LogType.ERROR);
+            logger.log("Erro ao parar o servidor: " + e.getMessage(), LogType.ERROR);
+        } finally {
+            logger.stop();
         }
     }
 
+    void addClient(ClientHandler clientHandler) {
+        activeClients.add(clientHandler);
+    }
+
     public void removeClient(ClientHandler clientHandler) {
         activeClients.remove(clientHandler);
         if (clientHandler.getUsername() != null && !clientHandler.getUsername().isEmpty()) {
             String userWithIp = String.format("%s (%s)", clientHandler.getUsername(), clientHandler.getClientIpAddress());
-            controller.updateActiveUsers(userWithIp, false);
+            events.updateActiveUsers(userWithIp, false);
         }
     }
 
     public void addAuthenticatedUser(String userWithIp) {
-        controller.updateActiveUsers(userWithIp, true);
+        events.updateActiveUsers(userWithIp, true);
+    }
+
+    public void removeAuthenticatedUser(String userWithIp) {
+        events.updateActiveUsers(userWithIp, false);
+    }
+
+    public ServerConfig getConfig() {
+        return config;
+    }
+
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public AsyncLogger getLogger() {
+        return logger;
+    }
+
+    public MovieSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    MovieListCache getMovieListCache() {
+        return movieListCache;
+    }
+
+    MovieDetailsCache getMovieDetailsCache() {
+        return movieDetailsCache;
+    }
+
+    SubscriptionRegistry getSubscriptions() {
+        return subscriptions;
+    }
+
+    // Carregado antes de aceitar conexões; depois disso só muda com cadastro, edição e exclusão de filmes
+    private void loadSearchIndex() {
+        long start = System.nanoTime();
+        try {
+            new MovieDAO(searchIndex).forEachMovie(new MovieQuery(), searchIndex::index);
+            logger.log("Índice de busca carregado com " + searchIndex.size() + " filme(s) em "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms", LogType.INFO);
+        } catch (SQLException e) {
+            logger.log("Erro ao carregar o índice de busca: " + e.getMessage(), LogType.ERROR);
+        }
+    }
+
+    // Sem o registro carregado a checagem de usuário existente continua indo ao banco
+    private void loadLiveUsers() {
+        try {
+            int count = new UserDAO().loadLiveUsers();
+            logger.log("Registro de usuários carregado com " + count + " usuário(s)", LogType.INFO);
+        } catch (SQLException e) {
+            logger.log("Erro ao carregar o registro de usuários: " + e.getMessage(), LogType.ERROR);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,570 @@
+package network;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+public class ServerConfig {
+
+    public enum BalanceStrategy {
+        ROUND_ROBIN,
+        LEAST_LOADED
+    }
+
+    // O que fazer com eventos de inscrição para uma conexão que não está dando conta de receber
+    public enum SlowConsumerPolicy {
+        DROP,     // descarta o evento
+        COALESCE  // segura os eventos, mantendo só o mais novo de cada filme/review
+    }
+
+    private int port = 22222;
+    private int selectorThreads = Runtime.getRuntime().availableProcessors();
+    private BalanceStrategy balanceStrategy = BalanceStrategy.ROUND_ROBIN;
+    private boolean tcpNoDelay = true;
+    private int receiveBufferSize = 0; // 0 = padrão do sistema operacional
+    private int sendBufferSize = 0;
+    private int backlog = 0;
+    // Buffers do pool também recebem cópias de respostas pequenas e pedaços de listagens
+    private static final int MIN_READ_BUFFER_SIZE = 1024;
+    private int readBufferSize = 8192;
+    private int maxPooledBuffers = 1024;
+    private long writeHighWatermark = 1024 * 1024;
+    private long writeLowWatermark = 256 * 1024;
+    private int maxPendingRequests = 256;
+    private int maxFrameLength = 1024 * 1024;
+    private long maxBackpressureMillis = 30_000;
+    private long timerTickMillis = 100;
+    private long preLoginTimeoutMillis = 5 * 60_000;
+    private long authenticatedIdleTimeoutMillis = 60 * 60_000;
+    private long midFrameTimeoutMillis = 30_000;
+    private int maxConnections = 10_000;
+    private long shutdownTimeoutMillis = 10_000;
+    // Intervalo do resumo de ServerMetrics no log; <= 0 desliga
+    private long metricsLogIntervalMillis = 60_000;
+    private boolean binaryProtocolEnabled = true;
+    // Sessão por conexão: depois do LOGIN (ou de um token válido) o token fica opcional e reenviar o mesmo
+    // token não refaz a verificação. Desligado, todo pedido traz o token e ele é verificado a cada vez.
+    private boolean connectionSessionEnabled = false;
+    private boolean compressionEnabled = true;
+    private int compressionThreshold = 8 * 1024;
+    private int maxPageSize = 100;
+    private int movieCacheSize = 1024;
+    // Acima desse volume aguardando envio os eventos não entram na fila de escrita (ver SlowConsumerPolicy)
+    private long eventBacklogBytes = 256 * 1024;
+    private int maxParkedEvents = 256;
+    private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.COALESCE;
+    private boolean rateLimitEnabled = true;
+    private double ipTokensPerSecond = 20;
+    private int ipBurst = 40;
+    private double userTokensPerSecond = 50;
+    private int userBurst = 100;
+    private int defaultOperationCost = 1;
+    // Custo em tokens por operação: listagens que varrem o banco custam mais
+    private final Map<String, Integer> operationCosts = new HashMap<>(Map.of(
+            "LOGIN", 4,
+            "CRIAR_USUARIO", 4,
+            "LISTAR_FILMES", 5,
+            "LISTAR_USUARIOS", 3,
+            "BUSCAR_FILME_ID", 2,
+            "BUSCAR_FILMES", 2,
+            "LISTAR_REVIEWS_USUARIO", 2,
+            "LISTAR_PROPRIO_USUARIO", 1,
+            "LOGOUT", 0
+    ));
+    private String dbPath = "voteflix.db";
+    private int dbPoolSize = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private String logDirectory = "logs";
+    private long logMaxFileBytes = 10 * 1024 * 1024;
+    private int logMaxFiles = 5;
+    private int logRingCapacity = 8192;
+    private AsyncLogger.Level fileLogLevel = AsyncLogger.Level.DEBUG;
+    private AsyncLogger.Level uiLogLevel = AsyncLogger.Level.DEBUG;
+    private int uiLogLinesPerSecond = 20;
+    private int uiLogMaxLineLength = 300;
+    private int logMaxPayloadLength = 2000;
+    private double defaultLogSampleRate = 1.0;
+    // Fração das requisições de cada operação que vai para o log (1.0 = todas)
+    private final Map<String, Double> logSampleRates = new HashMap<>();
+
+    public ServerConfig() {
+    }
+
+    public ServerConfig(int port) {
+        this.port = port;
+    }
+
+    // Chaves iguais aos nomes dos campos (ex.: "port=22222", "selectorThreads=4");
+    // custos e amostragem por operação usam "operationCost.LOGIN=4" e "logSampleRate.LISTAR_FILMES=0.1"
+    public static ServerConfig fromProperties(Properties props) {
+        ServerConfig c = new ServerConfig();
+        c.setPort(intProp(props, "port", c.getPort()));
+        c.setSelectorThreads(intProp(props, "selectorThreads", c.getSelectorThreads()));
+        c.setBalanceStrategy(BalanceStrategy.valueOf(props.getProperty("balanceStrategy", c.getBalanceStrategy().name()).trim()));
+        c.setTcpNoDelay(boolProp(props, "tcpNoDelay", c.isTcpNoDelay()));
+        c.setReceiveBufferSize(intProp(props, "receiveBufferSize", c.getReceiveBufferSize()));
+        c.setSendBufferSize(intProp(props, "sendBufferSize", c.getSendBufferSize()));
+        c.setBacklog(intProp(props, "backlog", c.getBacklog()));
+        c.setReadBufferSize(intProp(props, "readBufferSize", c.getReadBufferSize()));
+        c.setMaxPooledBuffers(intProp(props, "maxPooledBuffers", c.getMaxPooledBuffers()));
+        c.setWriteHighWatermark(longProp(props, "writeHighWatermark", c.getWriteHighWatermark()));
+        c.setWriteLowWatermark(longProp(props, "writeLowWatermark", c.getWriteLowWatermark()));
+        c.setMaxPendingRequests(intProp(props, "maxPendingRequests", c.getMaxPendingRequests()));
+        c.setMaxFrameLength(intProp(props, "maxFrameLength", c.getMaxFrameLength()));
+        c.setMaxBackpressureMillis(longProp(props, "maxBackpressureMillis", c.getMaxBackpressureMillis()));
+        c.setTimerTickMillis(longProp(props, "timerTickMillis", c.getTimerTickMillis()));
+        c.setPreLoginTimeoutMillis(longProp(props, "preLoginTimeoutMillis", c.getPreLoginTimeoutMillis()));
+        c.setAuthenticatedIdleTimeoutMillis(longProp(props, "authenticatedIdleTimeoutMillis", c.getAuthenticatedIdleTimeoutMillis()));
+        c.setMidFrameTimeoutMillis(longProp(props, "midFrameTimeoutMillis", c.getMidFrameTimeoutMillis()));
+        c.setMaxConnections(intProp(props, "maxConnections", c.getMaxConnections()));
+        c.setShutdownTimeoutMillis(longProp(props, "shutdownTimeoutMillis", c.getShutdownTimeoutMillis()));
+        c.setMetricsLogIntervalMillis(longProp(props, "metricsLogIntervalMillis", c.getMetricsLogIntervalMillis()));
+        c.setBinaryProtocolEnabled(boolProp(props, "binaryProtocolEnabled", c.isBinaryProtocolEnabled()));
+        c.setConnectionSessionEnabled(boolProp(props, "connectionSessionEnabled", c.isConnectionSessionEnabled()));
+        c.setCompressionEnabled(boolProp(props, "compressionEnabled", c.isCompressionEnabled()));
+        c.setCompressionThreshold(intProp(props, "compressionThreshold", c.getCompressionThreshold()));
+        c.setMaxPageSize(intProp(props, "maxPageSize", c.getMaxPageSize()));
+        c.setMovieCacheSize(intProp(props, "movieCacheSize", c.getMovieCacheSize()));
+        c.setEventBacklogBytes(longProp(props, "eventBacklogBytes", c.getEventBacklogBytes()));
+        c.setMaxParkedEvents(intProp(props, "maxParkedEvents", c.getMaxParkedEvents()));
+        c.setSlowConsumerPolicy(SlowConsumerPolicy.valueOf(props.getProperty("slowConsumerPolicy", c.getSlowConsumerPolicy().name()).trim()));
+        c.setRateLimitEnabled(boolProp(props, "rateLimitEnabled", c.isRateLimitEnabled()));
+        c.setIpTokensPerSecond(doubleProp(props, "ipTokensPerSecond", c.getIpTokensPerSecond()));
+        c.setIpBurst(intProp(props, "ipBurst", c.getIpBurst()));
+        c.setUserTokensPerSecond(doubleProp(props, "userTokensPerSecond", c.getUserTokensPerSecond()));
+        c.setUserBurst(intProp(props, "userBurst", c.getUserBurst()));
+        c.setDefaultOperationCost(intProp(props, "defaultOperationCost", c.defaultOperationCost));
+        c.setDbPath(props.getProperty("dbPath", c.getDbPath()).trim());
+        c.setDbPoolSize(intProp(props, "dbPoolSize", c.getDbPoolSize()));
+        c.setLogDirectory(props.getProperty("logDirectory", c.getLogDirectory()).trim());
+        c.setLogMaxFileBytes(longProp(props, "logMaxFileBytes", c.getLogMaxFileBytes()));
+        c.setLogMaxFiles(intProp(props, "logMaxFiles", c.getLogMaxFiles()));
+        c.setLogRingCapacity(intProp(props, "logRingCapacity", c.getLogRingCapacity()));
+        c.setFileLogLevel(AsyncLogger.Level.valueOf(props.getProperty("fileLogLevel", c.getFileLogLevel().name()).trim()));
+        c.setUiLogLevel(AsyncLogger.Level.valueOf(props.getProperty("uiLogLevel", c.getUiLogLevel().name()).trim()));
+        c.setUiLogLinesPerSecond(intProp(props, "uiLogLinesPerSecond", c.getUiLogLinesPerSecond()));
+        c.setUiLogMaxLineLength(intProp(props, "uiLogMaxLineLength", c.getUiLogMaxLineLength()));
+        c.setLogMaxPayloadLength(intProp(props, "logMaxPayloadLength", c.getLogMaxPayloadLength()));
+        c.setDefaultLogSampleRate(doubleProp(props, "defaultLogSampleRate", c.defaultLogSampleRate));
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith("operationCost.")) {
+                c.setOperationCost(key.substring("operationCost.".length()), intProp(props, key, c.defaultOperationCost));
+            } else if (key.startsWith("logSampleRate.")) {
+                c.setLogSampleRate(key.substring("logSampleRate.".length()), doubleProp(props, key, c.defaultLogSampleRate));
+            }
+        }
+        return c;
+    }
+
+    private static int intProp(Properties props, String key, int defaultValue) {
+        String value = props.getProperty(key);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private static long longProp(Properties props, String key, long defaultValue) {
+        String value = props.getProperty(key);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    private static double doubleProp(Properties props, String key, double defaultValue) {
+        String value = props.getProperty(key);
+        return value == null ? defaultValue : Double.parseDouble(value.trim());
+    }
+
+    private static boolean boolProp(Properties props, String key, boolean defaultValue) {
+        String value = props.getProperty(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public int getSelectorThreads() {
+        return selectorThreads;
+    }
+
+    public void setSelectorThreads(int selectorThreads) {
+        this.selectorThreads = Math.max(1, selectorThreads);
+    }
+
+    public BalanceStrategy getBalanceStrategy() {
+        return balanceStrategy;
+    }
+
+    public void setBalanceStrategy(BalanceStrategy balanceStrategy) {
+        this.balanceStrategy = balanceStrategy;
+    }
+
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    public void setTcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    public void setReceiveBufferSize(int receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    public int getSendBufferSize() {
+        return sendBufferSize;
+    }
+
+    public void setSendBufferSize(int sendBufferSize) {
+        this.sendBufferSize = sendBufferSize;
+    }
+
+    public int getBacklog() {
+        return backlog;
+    }
+
+    public void setBacklog(int backlog) {
+        this.backlog = backlog;
+    }
+
+    public int getReadBufferSize() {
+        return readBufferSize;
+    }
+
+    public void setReadBufferSize(int readBufferSize) {
+        this.readBufferSize = Math.max(MIN_READ_BUFFER_SIZE, readBufferSize);
+    }
+
+    public int getMaxPooledBuffers() {
+        return maxPooledBuffers;
+    }
+
+    public void setMaxPooledBuffers(int maxPooledBuffers) {
+        this.maxPooledBuffers = maxPooledBuffers;
+    }
+
+    public long getWriteHighWatermark() {
+        return writeHighWatermark;
+    }
+
+    public void setWriteHighWatermark(long writeHighWatermark) {
+        this.writeHighWatermark = Math.max(0, writeHighWatermark);
+    }
+
+    // Nunca acima da marca alta, qualquer que seja a ordem em que as duas foram definidas
+    public long getWriteLowWatermark() {
+        return Math.min(writeLowWatermark, writeHighWatermark);
+    }
+
+    public void setWriteLowWatermark(long writeLowWatermark) {
+        this.writeLowWatermark = Math.max(0, writeLowWatermark);
+    }
+
+    public int getMaxPendingRequests() {
+        return maxPendingRequests;
+    }
+
+    public void setMaxPendingRequests(int maxPendingRequests) {
+        this.maxPendingRequests = maxPendingRequests;
+    }
+
+    public int getMaxFrameLength() {
+        return maxFrameLength;
+    }
+
+    public void setMaxFrameLength(int maxFrameLength) {
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    public long getMaxBackpressureMillis() {
+        return maxBackpressureMillis;
+    }
+
+    public void setMaxBackpressureMillis(long maxBackpressureMillis) {
+        this.maxBackpressureMillis = maxBackpressureMillis;
+    }
+
+    public long getTimerTickMillis() {
+        return timerTickMillis;
+    }
+
+    public void setTimerTickMillis(long timerTickMillis) {
+        this.timerTickMillis = Math.max(1, timerTickMillis);
+    }
+
+    public long getPreLoginTimeoutMillis() {
+        return preLoginTimeoutMillis;
+    }
+
+    public void setPreLoginTimeoutMillis(long preLoginTimeoutMillis) {
+        this.preLoginTimeoutMillis = preLoginTimeoutMillis;
+    }
+
+    public long getAuthenticatedIdleTimeoutMillis() {
+        return authenticatedIdleTimeoutMillis;
+    }
+
+    public void setAuthenticatedIdleTimeoutMillis(long authenticatedIdleTimeoutMillis) {
+        this.authenticatedIdleTimeoutMillis = authenticatedIdleTimeoutMillis;
+    }
+
+    public long getMidFrameTimeoutMillis() {
+        return midFrameTimeoutMillis;
+    }
+
+    public void setMidFrameTimeoutMillis(long midFrameTimeoutMillis) {
+        this.midFrameTimeoutMillis = midFrameTimeoutMillis;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public long getShutdownTimeoutMillis() {
+        return shutdownTimeoutMillis;
+    }
+
+    public void setShutdownTimeoutMillis(long shutdownTimeoutMillis) {
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+    }
+
+    public long getMetricsLogIntervalMillis() {
+        return metricsLogIntervalMillis;
+    }
+
+    public void setMetricsLogIntervalMillis(long metricsLogIntervalMillis) {
+        this.metricsLogIntervalMillis = metricsLogIntervalMillis;
+    }
+
+    public boolean isBinaryProtocolEnabled() {
+        return binaryProtocolEnabled;
+    }
+
+    public void setBinaryProtocolEnabled(boolean binaryProtocolEnabled) {
+        this.binaryProtocolEnabled = binaryProtocolEnabled;
+    }
+
+    public boolean isConnectionSessionEnabled() {
+        return connectionSessionEnabled;
+    }
+
+    public void setConnectionSessionEnabled(boolean connectionSessionEnabled) {
+        this.connectionSessionEnabled = connectionSessionEnabled;
+    }
+
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    public void setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+
+    public int getMovieCacheSize() {
+        return movieCacheSize;
+    }
+
+    public void setMovieCacheSize(int movieCacheSize) {
+        this.movieCacheSize = movieCacheSize;
+    }
+
+    public long getEventBacklogBytes() {
+        return eventBacklogBytes;
+    }
+
+    public void setEventBacklogBytes(long eventBacklogBytes) {
+        this.eventBacklogBytes = eventBacklogBytes;
+    }
+
+    public int getMaxParkedEvents() {
+        return maxParkedEvents;
+    }
+
+    public void setMaxParkedEvents(int maxParkedEvents) {
+        this.maxParkedEvents = maxParkedEvents;
+    }
+
+    public SlowConsumerPolicy getSlowConsumerPolicy() {
+        return slowConsumerPolicy;
+    }
+
+    public void setSlowConsumerPolicy(SlowConsumerPolicy slowConsumerPolicy) {
+        this.slowConsumerPolicy = slowConsumerPolicy;
+    }
+
+    public boolean isRateLimitEnabled() {
+        return rateLimitEnabled;
+    }
+
+    public void setRateLimitEnabled(boolean rateLimitEnabled) {
+        this.rateLimitEnabled = rateLimitEnabled;
+    }
+
+    public double getIpTokensPerSecond() {
+        return ipTokensPerSecond;
+    }
+
+    public void setIpTokensPerSecond(double ipTokensPerSecond) {
+        this.ipTokensPerSecond = ipTokensPerSecond;
+    }
+
+    public int getIpBurst() {
+        return ipBurst;
+    }
+
+    public void setIpBurst(int ipBurst) {
+        this.ipBurst = ipBurst;
+    }
+
+    public double getUserTokensPerSecond() {
+        return userTokensPerSecond;
+    }
+
+    public void setUserTokensPerSecond(double userTokensPerSecond) {
+        this.userTokensPerSecond = userTokensPerSecond;
+    }
+
+    public int getUserBurst() {
+        return userBurst;
+    }
+
+    public void setUserBurst(int userBurst) {
+        this.userBurst = userBurst;
+    }
+
+    public int getOperationCost(String operacao) {
+        return operationCosts.getOrDefault(operacao, defaultOperationCost);
+    }
+
+    public void setOperationCost(String operacao, int cost) {
+        operationCosts.put(operacao, cost);
+    }
+
+    public void setDefaultOperationCost(int defaultOperationCost) {
+        this.defaultOperationCost = defaultOperationCost;
+    }
+
+    public String getDbPath() {
+        return dbPath;
+    }
+
+    public void setDbPath(String dbPath) {
+        this.dbPath = dbPath;
+    }
+
+    public int getDbPoolSize() {
+        return dbPoolSize;
+    }
+
+    public void setDbPoolSize(int dbPoolSize) {
+        this.dbPoolSize = dbPoolSize;
+    }
+
+    public String getLogDirectory() {
+        return logDirectory;
+    }
+
+    public void setLogDirectory(String logDirectory) {
+        this.logDirectory = logDirectory;
+    }
+
+    public long getLogMaxFileBytes() {
+        return logMaxFileBytes;
+    }
+
+    public void setLogMaxFileBytes(long logMaxFileBytes) {
+        this.logMaxFileBytes = logMaxFileBytes;
+    }
+
+    public int getLogMaxFiles() {
+        return logMaxFiles;
+    }
+
+    public void setLogMaxFiles(int logMaxFiles) {
+        this.logMaxFiles = logMaxFiles;
+    }
+
+    public int getLogRingCapacity() {
+        return logRingCapacity;
+    }
+
+    public void setLogRingCapacity(int logRingCapacity) {
+        this.logRingCapacity = logRingCapacity;
+    }
+
+    public AsyncLogger.Level getFileLogLevel() {
+        return fileLogLevel;
+    }
+
+    public void setFileLogLevel(AsyncLogger.Level fileLogLevel) {
+        this.fileLogLevel = fileLogLevel;
+    }
+
+    public AsyncLogger.Level getUiLogLevel() {
+        return uiLogLevel;
+    }
+
+    public void setUiLogLevel(AsyncLogger.Level uiLogLevel) {
+        this.uiLogLevel = uiLogLevel;
+    }
+
+    public int getUiLogLinesPerSecond() {
+        return uiLogLinesPerSecond;
+    }
+
+    public void setUiLogLinesPerSecond(int uiLogLinesPerSecond) {
+        this.uiLogLinesPerSecond = uiLogLinesPerSecond;
+    }
+
+    public int getUiLogMaxLineLength() {
+        return uiLogMaxLineLength;
+    }
+
+    public void setUiLogMaxLineLength(int uiLogMaxLineLength) {
+        this.uiLogMaxLineLength = uiLogMaxLineLength;
+    }
+
+    public int getLogMaxPayloadLength() {
+        return logMaxPayloadLength;
+    }
+
+    public void setLogMaxPayloadLength(int logMaxPayloadLength) {
+        this.logMaxPayloadLength = logMaxPayloadLength;
+    }
+
+    public double getLogSampleRate(String operacao) {
+        return operacao == null ? defaultLogSampleRate : logSampleRates.getOrDefault(operacao, defaultLogSampleRate);
+    }
+
+    public void setLogSampleRate(String operacao, double rate) {
+        logSampleRates.put(operacao, rate);
+    }
+
+    public void setDefaultLogSampleRate(double defaultLogSampleRate) {
+        this.defaultLogSampleRate = defaultLogSampleRate;
+    }
+}
@@ -0,0 +1,9 @@
+package network;
+
+// Destino dos eventos do servidor: a tela JavaFX (ServerController) ou o console no modo headless
+public interface ServerEventSink {
+
+    void log(String message, LogType type);
+
+    void updateActiveUsers(String username, boolean isActive);
+}
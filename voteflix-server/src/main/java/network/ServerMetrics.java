@@ -0,0 +1,78 @@
+package network;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class ServerMetrics {
+    private final LongAdder backpressurePauses = new LongAdder();
+    private final LongAdder backpressureDisconnects = new LongAdder();
+    private final LongAdder oversizedFrames = new LongAdder();
+    private final LongAdder idleTimeouts = new LongAdder();
+    private final LongAdder rateLimitedRequests = new LongAdder();
+    private final LongAdder rejectedConnections = new LongAdder();
+    private final LongAdder droppedEvents = new LongAdder();
+    private final LongAdder coalescedEvents = new LongAdder();
+
+    public void recordBackpressurePause() {
+        backpressurePauses.increment();
+    }
+
+    public void recordBackpressureDisconnect() {
+        backpressureDisconnects.increment();
+    }
+
+    public void recordOversizedFrame() {
+        oversizedFrames.increment();
+    }
+
+    public void recordIdleTimeout() {
+        idleTimeouts.increment();
+    }
+
+    public void recordRateLimitedRequest() {
+        rateLimitedRequests.increment();
+    }
+
+    public void recordRejectedConnection() {
+        rejectedConnections.increment();
+    }
+
+    public void recordDroppedEvents(int count) {
+        droppedEvents.add(count);
+    }
+
+    public void recordCoalescedEvent() {
+        coalescedEvents.increment();
+    }
+
+    public long getBackpressurePauses() {
+        return backpressurePauses.sum();
+    }
+
+    public long getBackpressureDisconnects() {
+        return backpressureDisconnects.sum();
+    }
+
+    public long getOversizedFrames() {
+        return oversizedFrames.sum();
+    }
+
+    public long getIdleTimeouts() {
+        return idleTimeouts.sum();
+    }
+
+    public long getRateLimitedRequests() {
+        return rateLimitedRequests.sum();
+    }
+
+    public long getRejectedConnections() {
+        return rejectedConnections.sum();
+    }
+
+    public long getDroppedEvents() {
+        return droppedEvents.sum();
+    }
+
+    public long getCoalescedEvents() {
+        return coalescedEvents.sum();
+    }
+}
@@ -0,0 +1,79 @@
+package network;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Quem está inscrito em cada filme (INSCREVER com "id_filme") e no catálogo (INSCREVER sem "id_filme").
+// Os handlers publicam aqui depois de cada escrita que deu certo; o evento é codificado uma vez
+// (BroadcastMessage) e entregue pela fila de escrita de cada conexão (ClientHandler.pushEvent).
+// Cada conexão lembra as próprias inscrições e as remove ao fechar.
+final class SubscriptionRegistry {
+
+    private final Map<Integer, Set<ClientHandler>> byMovie = new ConcurrentHashMap<>();
+    private final Set<ClientHandler> catalog = ConcurrentHashMap.newKeySet();
+
+    void subscribeMovie(int movieId, ClientHandler client) {
+        byMovie.compute(movieId, (id, clients) -> {
+            if (clients == null) {
+                clients = ConcurrentHashMap.newKeySet();
+            }
+            clients.add(client);
+            return clients;
+        });
+    }
+
+    void unsubscribeMovie(int movieId, ClientHandler client) {
+        byMovie.computeIfPresent(movieId, (id, clients) -> {
+            clients.remove(client);
+            return clients.isEmpty() ? null : clients;
+        });
+    }
+
+    void subscribeCatalog(ClientHandler client) {
+        catalog.add(client);
+    }
+
+    void unsubscribeCatalog(ClientHandler client) {
+        catalog.remove(client);
+    }
+
+    // Evitam montar o evento (e reler o filme no banco) quando ninguém vai recebê-lo
+    boolean hasMovieSubscribers(int movieId) {
+        return byMovie.containsKey(movieId);
+    }
+
+    boolean hasSubscribers(int movieId) {
+        return !catalog.isEmpty() || byMovie.containsKey(movieId);
+    }
+
+    // Eventos de review: só interessam a quem está com a página do filme aberta
+    void publishToMovie(int movieId, BroadcastMessage event) {
+        for (ClientHandler client : movieSubscribers(movieId)) {
+            client.pushEvent(event);
+        }
+    }
+
+    // Eventos que mudam uma linha da listagem: catálogo e inscritos no filme, sem repetir quem está nos dois
+    void publish(int movieId, BroadcastMessage event) {
+        for (ClientHandler client : catalog) {
+            client.pushEvent(event);
+        }
+        for (ClientHandler client : movieSubscribers(movieId)) {
+            if (!catalog.contains(client)) {
+                client.pushEvent(event);
+            }
+        }
+    }
+
+    void clear() {
+        byMovie.clear();
+        catalog.clear();
+    }
+
+    private Set<ClientHandler> movieSubscribers(int movieId) {
+        Set<ClientHandler> clients = byMovie.get(movieId);
+        return clients != null ? clients : Collections.emptySet();
+    }
+}
@@ -0,0 +1,63 @@
+package network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Roda de tempo (hashed timing wheel) usada por um único SelectorLoop; não é thread-safe.
+// Agendar e avançar custam O(1) por entrada, independente do número de conexões.
+public class TimingWheel<T> {
+
+    private static final class Entry<T> {
+        final T item;
+        final long deadline;
+
+        Entry(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+    }
+
+    private final long tickMillis;
+    private final List<List<Entry<T>>> slots;
+    private long currentTick;
+
+    public TimingWheel(int wheelSize, long tickMillis, long now) {
+        this.tickMillis = tickMillis;
+        this.slots = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            slots.add(new ArrayList<>());
+        }
+        this.currentTick = now / tickMillis;
+    }
+
+    public void schedule(T item, long deadline) {
+        long tick = Math.max(deadline / tickMillis, currentTick + 1);
+        slots.get((int) (tick % slots.size())).add(new Entry<>(item, deadline));
+    }
+
+    // Entradas de voltas futuras da roda permanecem no slot até o tick delas
+    public void advance(long now, Consumer<T> onDue) {
+        long targetTick = now / tickMillis;
+        long ticks = Math.min(targetTick - currentTick, slots.size());
+        List<T> due = new ArrayList<>();
+        for (long i = 1; i <= ticks; i++) {
+            List<Entry<T>> slot = slots.get((int) ((currentTick + i) % slots.size()));
+            for (int j = slot.size() - 1; j >= 0; j--) {
+                Entry<T> entry = slot.get(j);
+                if (entry.deadline / tickMillis <= targetTick) {
+                    slot.set(j, slot.get(slot.size() - 1));
+                    slot.remove(slot.size() - 1);
+                    due.add(entry.item);
+                }
+            }
+        }
+        currentTick = Math.max(currentTick, targetTick);
+        // Callbacks rodam depois de avançar o tick, pois costumam reagendar
+        due.forEach(onDue);
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+}
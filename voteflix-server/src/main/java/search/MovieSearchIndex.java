@@ -0,0 +1,294 @@
+package search;
+
+import model.Movie;
+
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+// Índice invertido em memória sobre título, diretor e sinopse, com ranking BM25.
+// Os termos são normalizados sem acento e em minúsculas ("Ação" e "acao" são o mesmo termo);
+// as ocorrências no título e no diretor pesam mais que na sinopse.
+// Leituras concorrentes; as escritas (cadastro, edição e exclusão de filmes) são raras e pegam o lock exclusivo.
+public class MovieSearchIndex {
+
+    private static final float TITLE_WEIGHT = 3f;
+    private static final float DIRECTOR_WEIGHT = 2f;
+    private static final float SYNOPSIS_WEIGHT = 1f;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // Último termo da busca com pelo menos esse tamanho também casa como prefixo ("matr" -> "matrix")
+    private static final int MIN_PREFIX_LENGTH = 3;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Set<String> STOPWORDS = Set.of(
+            "a", "o", "as", "os", "um", "uma", "uns", "umas", "de", "da", "do", "das", "dos",
+            "e", "em", "no", "na", "nos", "nas", "por", "para", "com", "que", "se", "ao", "aos");
+
+    // termo -> lista de (posição do filme, frequência ponderada); TreeMap para a busca por prefixo
+    private final NavigableMap<String, Postings> postings = new TreeMap<>();
+    // Cada filme ocupa uma posição densa (slot) para as pontuações irem num array em vez de um mapa
+    private final Map<Integer, Integer> slotByMovieId = new HashMap<>();
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+    private int[] slotMovieIds = new int[64];
+    private float[] slotLengths = new float[64];
+    private String[][] slotTerms = new String[64][];
+    private int slotCount;
+    private double totalLength;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public record Hit(int movieId, double score) {
+    }
+
+    public record Result(List<Hit> hits, int totalMatches) {
+    }
+
+    // Arrays paralelos e sem ordem; remoção troca pelo último
+    private static final class Postings {
+        int[] slots = new int[4];
+        float[] frequencies = new float[4];
+        int size;
+
+        void add(int slot, float frequency) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            slots[size] = slot;
+            frequencies[size++] = frequency;
+        }
+
+        void remove(int slot) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) {
+                    size--;
+                    slots[i] = slots[size];
+                    frequencies[i] = frequencies[size];
+                    return;
+                }
+            }
+        }
+    }
+
+    // Adiciona ou substitui o filme no índice
+    public void index(Movie movie) {
+        Map<String, Float> terms = new HashMap<>();
+        addTerms(terms, movie.getTitulo(), TITLE_WEIGHT);
+        addTerms(terms, movie.getDiretor(), DIRECTOR_WEIGHT);
+        addTerms(terms, movie.getSinopse(), SYNOPSIS_WEIGHT);
+        float length = 0;
+        for (float tf : terms.values()) {
+            length += tf;
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(movie.getId());
+            int slot = allocateSlot();
+            for (Map.Entry<String, Float> entry : terms.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), k -> new Postings()).add(slot, entry.getValue());
+            }
+            slotByMovieId.put(movie.getId(), slot);
+            slotMovieIds[slot] = movie.getId();
+            slotLengths[slot] = length;
+            slotTerms[slot] = terms.keySet().toArray(new String[0]);
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int allocateSlot() {
+        Integer free = freeSlots.poll();
+        if (free != null) {
+            return free;
+        }
+        if (slotCount == slotMovieIds.length) {
+            int capacity = slotCount * 2;
+            slotMovieIds = Arrays.copyOf(slotMovieIds, capacity);
+            slotLengths = Arrays.copyOf(slotLengths, capacity);
+            slotTerms = Arrays.copyOf(slotTerms, capacity);
+        }
+        return slotCount++;
+    }
+
+    public void remove(int movieId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(movieId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeLocked(int movieId) {
+        Integer slot = slotByMovieId.remove(movieId);
+        if (slot == null) {
+            return;
+        }
+        for (String term : slotTerms[slot]) {
+            Postings docs = postings.get(term);
+            if (docs != null) {
+                docs.remove(slot);
+                if (docs.size == 0) {
+                    postings.remove(term);
+                }
+            }
+        }
+        totalLength -= slotLengths[slot];
+        slotTerms[slot] = null;
+        freeSlots.push(slot);
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            slotByMovieId.clear();
+            freeSlots.clear();
+            Arrays.fill(slotTerms, null);
+            slotCount = 0;
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotByMovieId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Os "limit" filmes mais relevantes (qualquer termo casa; mais termos e termos raros pontuam mais)
+    public Result search(String text, int limit) {
+        List<String> queryTerms = tokenize(text);
+        if (queryTerms.isEmpty()) {
+            return new Result(List.of(), 0);
+        }
+
+        lock.readLock().lock();
+        try {
+            int documentCount = slotByMovieId.size();
+            if (documentCount == 0) {
+                return new Result(List.of(), 0);
+            }
+            List<Postings> matches = new ArrayList<>();
+            for (int i = 0; i < queryTerms.size(); i++) {
+                String term = queryTerms.get(i);
+                boolean last = i == queryTerms.size() - 1;
+                if (last && term.length() >= MIN_PREFIX_LENGTH) {
+                    // Termo sendo digitado: todos os termos do índice que começam com ele
+                    matches.addAll(postings.subMap(term, true, term + Character.MAX_VALUE, false).values());
+                } else {
+                    Postings docs = postings.get(term);
+                    if (docs != null) {
+                        matches.add(docs);
+                    }
+                }
+            }
+            if (matches.isEmpty()) {
+                return new Result(List.of(), 0);
+            }
+
+            // norm = K1 * (1 - B + B * tamanho / médio), com as constantes fora do laço
+            double normBase = K1 * (1 - B);
+            double normPerLength = K1 * B * documentCount / totalLength;
+            double[] scores = new double[slotCount];
+            int[] touched = new int[16];
+            int touchedCount = 0;
+            for (Postings docs : matches) {
+                double idf = Math.log(1 + (documentCount - docs.size + 0.5) / (docs.size + 0.5)) * (K1 + 1);
+                for (int d = 0; d < docs.size; d++) {
+                    int slot = docs.slots[d];
+                    double tf = docs.frequencies[d];
+                    double norm = normBase + normPerLength * slotLengths[slot];
+                    if (scores[slot] == 0) {
+                        if (touchedCount == touched.length) {
+                            touched = Arrays.copyOf(touched, touchedCount * 2);
+                        }
+                        touched[touchedCount++] = slot;
+                    }
+                    scores[slot] += idf * tf / (tf + norm);
+                }
+            }
+            return new Result(topHits(scores, touched, touchedCount, limit), touchedCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Hit> topHits(double[] scores, int[] touched, int touchedCount, int limit) {
+        // Heap mínimo com os "limit" melhores; empate fica com o menor id
+        Comparator<Hit> worstFirst = (a, b) -> a.score() != b.score()
+                ? Double.compare(a.score(), b.score()) : Integer.compare(b.movieId(), a.movieId());
+        PriorityQueue<Hit> heap = new PriorityQueue<>(limit + 1, worstFirst);
+        for (int i = 0; i < touchedCount; i++) {
+            int slot = touched[i];
+            if (heap.size() == limit) {
+                // Descarta sem alocar quando não supera o pior do heap
+                Hit worst = heap.peek();
+                double score = scores[slot];
+                if (score < worst.score() || (score == worst.score() && slotMovieIds[slot] > worst.movieId())) {
+                    continue;
+                }
+            }
+            heap.offer(new Hit(slotMovieIds[slot], scores[slot]));
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+        List<Hit> hits = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            hits.add(heap.poll());
+        }
+        Collections.reverse(hits);
+        return hits;
+    }
+
+    private static void addTerms(Map<String, Float> terms, String text, float weight) {
+        for (String term : tokenize(text)) {
+            terms.merge(term, weight, Float::sum);
+        }
+    }
+
+    // Sem acentos, minúsculas, separado em letras/dígitos, sem stopwords
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String token = normalized.substring(start, i);
+                if (!STOPWORDS.contains(token)) {
+                    tokens.add(token);
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
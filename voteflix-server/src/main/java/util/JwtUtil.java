@@ -7,12 +7,26 @@ import com.auth0.jwt.interfaces.DecodedJWT;
 import com.auth0.jwt.interfaces.JWTVerifier;
 
 import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class JwtUtil {
 
     private static final String SECRET = "your-very-secret-key";
     private static final long EXPIRATION_TIME = 864_000_000;
     private static final Algorithm ALGORITHM = Algorithm.HMAC256(SECRET);
+    // O verificador é imutável e seguro entre threads: montado uma vez só
+    private static final JWTVerifier VERIFIER = JWT.require(ALGORITHM).build();
+
+    // Tokens já verificados: a mesma sessão reenvia o mesmo token a cada requisição, então
+    // repetir o HMAC e o parse do JSON não acrescenta nada até o token expirar
+    private static final int MAX_CACHED_TOKENS = 10_000;
+    private static final Map<String, Principal> VERIFIED = new ConcurrentHashMap<>();
+
+    // Dados do token já verificado
+    public record Principal(int userId, String username, String role, long expiresAtMillis) {
+    }
 
     public static String generateToken(String username, String role, int userId) {
         return JWT.create()
@@ -25,40 +39,74 @@ public class JwtUtil {
 
     public static DecodedJWT verifyToken(String token) {
         try {
-            JWTVerifier verifier = JWT.require(ALGORITHM).build();
-            return verifier.verify(token);
+            return VERIFIER.verify(token);
         } catch (JWTVerificationException exception) {
             return null;
         }
     }
 
-    public static String getUsernameFromToken(String token) {
-        DecodedJWT decodedJWT = verifyToken(token);
-        return (decodedJWT != null) ? decodedJWT.getSubject() : null;
-    }
+    // Uma verificação só, com usuário, id e papel juntos; null se o token for inválido, expirado
+    // ou não tiver as claims esperadas. Tokens repetidos saem do cache até a expiração.
+    public static Principal authenticate(String token) {
+        long now = System.currentTimeMillis();
+        Principal cached = VERIFIED.get(token);
+        if (cached != null) {
+            if (cached.expiresAtMillis() > now) {
+                return cached;
+            }
+            VERIFIED.remove(token, cached);
+            return null;
+        }
 
-    public static String getRoleFromToken(String token) {
         DecodedJWT decodedJWT = verifyToken(token);
-        if (decodedJWT != null) {
-            try {
-                return decodedJWT.getClaim("role").asString();
-            } catch (Exception e) {
+        if (decodedJWT == null) {
+            return null;
+        }
+        Principal principal;
+        try {
+            Integer userId = decodedJWT.getClaim("id").asInt();
+            String role = decodedJWT.getClaim("role").asString();
+            String username = decodedJWT.getSubject();
+            Date expiresAt = decodedJWT.getExpiresAt();
+            if (userId == null || role == null || username == null) {
                 return null;
             }
+            principal = new Principal(userId, username, role, expiresAt != null ? expiresAt.getTime() : Long.MAX_VALUE);
+        } catch (Exception e) {
+            return null;
         }
-        return null;
+
+        if (VERIFIED.size() >= MAX_CACHED_TOKENS) {
+            evict(now);
+        }
+        VERIFIED.put(token, principal);
+        return principal;
+    }
+
+    // Primeiro saem os expirados; se ainda estiver cheio, descarta um quarto sem critério
+    // (quem sair só paga uma nova verificação na próxima requisição)
+    private static void evict(long now) {
+        VERIFIED.values().removeIf(p -> p.expiresAtMillis() <= now);
+        int toRemove = VERIFIED.size() - MAX_CACHED_TOKENS * 3 / 4;
+        Iterator<String> keys = VERIFIED.keySet().iterator();
+        while (toRemove-- > 0 && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    public static String getUsernameFromToken(String token) {
+        Principal principal = authenticate(token);
+        return (principal != null) ? principal.username() : null;
     }
 
+    public static String getRoleFromToken(String token) {
+        Principal principal = authenticate(token);
+        return (principal != null) ? principal.role() : null;
+    }
 
     public static Integer getUserIdFromToken(String token) {
-        DecodedJWT decodedJWT = verifyToken(token);
-        if (decodedJWT != null) {
-            try {
-                return decodedJWT.getClaim("id").asInt();
-            } catch (Exception e) {
-                return null;
-            }
-        }
-        return null;
+        Principal principal = authenticate(token);
+        return (principal != null) ? principal.userId() : null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,94 @@
+package dao;
+
+import model.Movie;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MovieQueryTest {
+
+    private static Movie movie(int id, String titulo, String ano, double nota, int avaliacoes) {
+        Movie movie = new Movie();
+        movie.setId(id);
+        movie.setTitulo(titulo);
+        movie.setAno(ano);
+        movie.setNota(nota);
+        movie.setQtdAvaliacoes(avaliacoes);
+        return movie;
+    }
+
+    private static MovieQuery sortedBy(MovieQuery.SortKey key, boolean descending) {
+        MovieQuery query = new MovieQuery();
+        query.setSortKey(key);
+        query.setDescending(descending);
+        return query;
+    }
+
+    @Test
+    void cursorRoundTripsForEverySortKey() {
+        Movie last = movie(17, "O Título | com barra", "1999", 4.5, 12);
+        Object[] expected = {17, 4.5, 12, 1999, "O Título | com barra"};
+        MovieQuery.SortKey[] keys = MovieQuery.SortKey.values();
+        for (int i = 0; i < keys.length; i++) {
+            for (boolean descending : new boolean[]{false, true}) {
+                String cursor = sortedBy(keys[i], descending).cursorAfter(last);
+                MovieQuery next = sortedBy(keys[i], descending);
+                next.startAfter(cursor);
+
+                assertTrue(next.hasCursor());
+                assertEquals(17, next.getAfterId());
+                assertEquals(expected[i], next.getAfterValue(), keys[i] + (descending ? " desc" : " asc"));
+            }
+        }
+    }
+
+    @Test
+    void cursorIsUrlSafe() {
+        String cursor = sortedBy(MovieQuery.SortKey.TITULO, false).cursorAfter(movie(1, "??>>~~ ação", "2000", 0, 0));
+        assertTrue(cursor.matches("[A-Za-z0-9_-]+"), cursor);
+    }
+
+    @Test
+    void continueAfterMatchesTheTextCursor() {
+        Movie last = movie(8, "Filme", "2010", 3.0, 4);
+        MovieQuery viaCursor = sortedBy(MovieQuery.SortKey.NOTA, true);
+        viaCursor.startAfter(viaCursor.cursorAfter(last));
+        MovieQuery direct = sortedBy(MovieQuery.SortKey.NOTA, true);
+        direct.continueAfter(last);
+
+        assertEquals(viaCursor.getAfterId(), direct.getAfterId());
+        assertEquals(viaCursor.getAfterValue(), direct.getAfterValue());
+    }
+
+    @Test
+    void rejectsCursorFromAnotherOrdering() {
+        Movie last = movie(3, "Filme", "2001", 2.0, 1);
+        String byRating = sortedBy(MovieQuery.SortKey.NOTA, true).cursorAfter(last);
+        assertThrows(IllegalArgumentException.class, () -> sortedBy(MovieQuery.SortKey.NOTA, false).startAfter(byRating));
+        assertThrows(IllegalArgumentException.class, () -> sortedBy(MovieQuery.SortKey.ANO, true).startAfter(byRating));
+    }
+
+    @Test
+    void rejectsMalformedCursor() {
+        MovieQuery query = new MovieQuery();
+        assertThrows(IllegalArgumentException.class, () -> query.startAfter("não é base64!"));
+        String twoParts = Base64.getUrlEncoder().encodeToString("ID+|5".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class, () -> query.startAfter(twoParts));
+        String badId = Base64.getUrlEncoder().encodeToString("ID+|x|5".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class, () -> query.startAfter(badId));
+    }
+
+    @Test
+    void cursorMakesTheQueryFiltered() {
+        MovieQuery query = new MovieQuery();
+        assertTrue(query.isUnfiltered());
+        query.startAfter(query.cursorAfter(movie(5, "Filme", "2000", 0, 0)));
+        assertFalse(query.isUnfiltered());
+    }
+}
@@ -0,0 +1,183 @@
+package network;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LineFramerTest {
+
+    private static final int MAX_FRAME = 1024 * 1024;
+
+    // Entrega os bytes nos pedaços dados, um por read, e depois sinaliza fim do stream
+    private static final class ChunkedChannel implements ReadableByteChannel {
+        private final Deque<byte[]> chunks = new ArrayDeque<>();
+        private ByteBuffer current;
+
+        void add(byte[] chunk) {
+            chunks.add(chunk);
+        }
+
+        boolean hasData() {
+            return (current != null && current.hasRemaining()) || !chunks.isEmpty();
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (current == null || !current.hasRemaining()) {
+                byte[] next = chunks.poll();
+                if (next == null) {
+                    return -1;
+                }
+                current = ByteBuffer.wrap(next);
+            }
+            int n = Math.min(dst.remaining(), current.remaining());
+            dst.put(current.slice(current.position(), n));
+            current.position(current.position() + n);
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private final BufferPool pool = new BufferPool(64, 16);
+    private final LineFramer framer = new LineFramer(pool);
+    private final List<byte[]> frames = new ArrayList<>();
+
+    private void feed(byte[] data, int chunkSize) throws IOException {
+        ChunkedChannel channel = new ChunkedChannel();
+        for (int i = 0; i < data.length; i += chunkSize) {
+            channel.add(Arrays.copyOfRange(data, i, Math.min(data.length, i + chunkSize)));
+        }
+        while (channel.hasData()) {
+            framer.readFrom(channel, frames::add, MAX_FRAME);
+        }
+    }
+
+    private List<String> lines() {
+        List<String> lines = new ArrayList<>();
+        for (byte[] frame : frames) {
+            lines.add(new String(frame, StandardCharsets.UTF_8));
+        }
+        return lines;
+    }
+
+    private static byte[] lengthPrefixed(byte[]... payloads) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] payload : payloads) {
+            out.writeBytes(ByteBuffer.allocate(4).putInt(payload.length).array());
+            out.writeBytes(payload);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] payload(int size, int seed) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) (i * 31 + seed);
+        }
+        return bytes;
+    }
+
+    @Test
+    void splitsLinesAcrossReads() throws IOException {
+        feed("{\"a\":1}\n{\"b\":2}\n{\"c\":3}\n".getBytes(StandardCharsets.UTF_8), 5);
+        assertEquals(List.of("{\"a\":1}", "{\"b\":2}", "{\"c\":3}"), lines());
+        assertFalse(framer.hasPartialFrame());
+    }
+
+    @Test
+    void joinsLinesLargerThanThePooledBuffer() throws IOException {
+        String longLine = "x".repeat(1000);
+        feed((longLine + "\nfim\n").getBytes(StandardCharsets.UTF_8), 64);
+        assertEquals(List.of(longLine, "fim"), lines());
+    }
+
+    @Test
+    void skipsEmptyLines() throws IOException {
+        feed("\n\num\n\n".getBytes(StandardCharsets.UTF_8), 3);
+        assertEquals(List.of("um"), lines());
+    }
+
+    @Test
+    void keepsIncompleteLineAsPartialFrame() throws IOException {
+        feed("{\"incompleto\":".getBytes(StandardCharsets.UTF_8), 4);
+        assertTrue(frames.isEmpty());
+        assertTrue(framer.hasPartialFrame());
+        assertEquals(14, framer.getPendingBytes());
+    }
+
+    @Test
+    void splitsLengthPrefixedFramesOnAnyBoundary() throws IOException {
+        byte[] first = payload(10, 1);
+        byte[] second = payload(5000, 2);
+        byte[] third = payload(1, 3);
+        for (int chunk : new int[]{1, 3, 7, 64, 100_000}) {
+            frames.clear();
+            framer.release();
+            framer.enableLengthPrefix();
+            feed(lengthPrefixed(first, second, third), chunk);
+            assertEquals(3, frames.size(), "chunk " + chunk);
+            assertArrayEquals(first, frames.get(0));
+            assertArrayEquals(second, frames.get(1));
+            assertArrayEquals(third, frames.get(2));
+            assertFalse(framer.hasPartialFrame());
+        }
+    }
+
+    @Test
+    void headerAloneDoesNotAllocateTheDeclaredLength() throws IOException {
+        framer.enableLengthPrefix();
+        feed(ByteBuffer.allocate(4).putInt(MAX_FRAME).array(), 4);
+        assertTrue(frames.isEmpty());
+        assertTrue(framer.hasPartialFrame());
+
+        // O resto chega depois, em pedaços; o frame sai inteiro e com o tamanho exato
+        byte[] body = payload(MAX_FRAME, 9);
+        feed(body, 8192);
+        assertEquals(1, frames.size());
+        assertArrayEquals(body, frames.get(0));
+    }
+
+    @Test
+    void reportsOversizedDeclaredLength() throws IOException {
+        framer.enableLengthPrefix();
+        feed(ByteBuffer.allocate(4).putInt(MAX_FRAME + 1).array(), 4);
+        assertTrue(frames.isEmpty());
+        assertTrue(framer.getPendingBytes() > MAX_FRAME);
+    }
+
+    @Test
+    void reportsNonPositiveDeclaredLength() throws IOException {
+        framer.enableLengthPrefix();
+        feed(new byte[]{0, 0, 0, 0}, 4);
+        assertTrue(frames.isEmpty());
+        assertTrue(framer.getPendingBytes() > MAX_FRAME);
+    }
+
+    @Test
+    void returnsEndOfStream() throws IOException {
+        assertEquals(-1, framer.readFrom(new ChunkedChannel(), frames::add, MAX_FRAME));
+        assertFalse(framer.hasPartialFrame());
+    }
+}
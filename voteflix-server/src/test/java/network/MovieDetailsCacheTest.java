@@ -0,0 +1,69 @@
+package network;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MovieDetailsCacheTest {
+
+    private final List<Integer> loads = new ArrayList<>();
+
+    private MovieDetailsCache.Details load(int movieId) {
+        loads.add(movieId);
+        if (movieId < 0) {
+            return null;
+        }
+        JSONObject review = new JSONObject().put("id", "1").put("nota", "5");
+        return new MovieDetailsCache.Details(new JSONObject().put("id", String.valueOf(movieId)),
+                new JSONObject[]{review}, new int[]{7});
+    }
+
+    @Test
+    void servesRepeatedReadsFromTheCache() throws SQLException {
+        MovieDetailsCache cache = new MovieDetailsCache(4);
+        MovieDetailsCache.Details first = cache.get(1, this::load);
+        assertSame(first, cache.get(1, this::load));
+        assertEquals(List.of(1), loads);
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntry() throws SQLException {
+        MovieDetailsCache cache = new MovieDetailsCache(2);
+        cache.get(1, this::load);
+        cache.get(2, this::load);
+        cache.get(1, this::load); // 1 passa a ser o mais recente
+        cache.get(3, this::load); // sai o 2
+        loads.clear();
+
+        cache.get(1, this::load);
+        cache.get(3, this::load);
+        assertTrue(loads.isEmpty());
+        cache.get(2, this::load);
+        assertEquals(List.of(2), loads);
+    }
+
+    @Test
+    void missingMovieIsNotCached() throws SQLException {
+        MovieDetailsCache cache = new MovieDetailsCache(2);
+        assertNull(cache.get(-1, this::load));
+        assertNull(cache.get(-1, this::load));
+        assertEquals(List.of(-1, -1), loads);
+    }
+
+    @Test
+    void marksOnlyTheRequestersOwnReview() throws SQLException {
+        MovieDetailsCache.Details details = new MovieDetailsCache(2).get(1, this::load);
+        assertTrue(details.reviewsFor(7).getJSONObject(0).getBoolean("isOwnReview"));
+        assertTrue(details.reviewsFor(8).getJSONObject(0).isNull("isOwnReview"));
+        // O objeto compartilhado no cache não é alterado
+        assertTrue(details.reviews()[0].isNull("isOwnReview"));
+    }
+}
@@ -0,0 +1,72 @@
+package network;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimiterTest {
+
+    // Taxa baixa o bastante para o balde não reabastecer durante o teste
+    private final RateLimiter limiter = new RateLimiter(0.01, 5);
+
+    @Test
+    void allowsTheBurstThenRejects() {
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire("ip:1", 1), "token " + i);
+        }
+        assertFalse(limiter.tryAcquire("ip:1", 1));
+    }
+
+    @Test
+    void costConsumesSeveralTokens() {
+        assertTrue(limiter.tryAcquire("ip:1", 4));
+        assertFalse(limiter.tryAcquire("ip:1", 2));
+        assertTrue(limiter.tryAcquire("ip:1", 1));
+    }
+
+    @Test
+    void rejectedRequestDoesNotSpendTokens() {
+        assertTrue(limiter.tryAcquire("ip:1", 3));
+        assertFalse(limiter.tryAcquire("ip:1", 5));
+        assertTrue(limiter.tryAcquire("ip:1", 2));
+    }
+
+    @Test
+    void keysHaveIndependentBuckets() {
+        assertTrue(limiter.tryAcquire("ip:1", 5));
+        assertFalse(limiter.tryAcquire("ip:1", 1));
+        assertTrue(limiter.tryAcquire("usuario:1", 5));
+    }
+
+    @Test
+    void refillsOverTime() throws InterruptedException {
+        RateLimiter fast = new RateLimiter(1000, 2);
+        assertTrue(fast.tryAcquire("k", 2));
+        assertFalse(fast.tryAcquire("k", 2));
+        Thread.sleep(20);
+        assertTrue(fast.tryAcquire("k", 2));
+    }
+
+    @Test
+    void refusesNewKeysWhileEveryTrackedBucketIsInUse() {
+        RateLimiter small = new RateLimiter(0.01, 5, 2);
+        assertTrue(small.tryAcquire("ip:1", 1));
+        assertTrue(small.tryAcquire("ip:2", 1));
+        assertFalse(small.tryAcquire("ip:3", 1));
+        // Chaves já conhecidas continuam atendidas
+        assertTrue(small.tryAcquire("ip:1", 1));
+        assertEquals(2, small.trackedKeys());
+    }
+
+    @Test
+    void sweepFreesRefilledBucketsForNewKeys() throws InterruptedException {
+        RateLimiter small = new RateLimiter(1000, 2, 2);
+        assertTrue(small.tryAcquire("ip:1", 2));
+        assertTrue(small.tryAcquire("ip:2", 2));
+        Thread.sleep(20);
+        assertTrue(small.tryAcquire("ip:3", 1));
+        assertEquals(1, small.trackedKeys());
+    }
+}
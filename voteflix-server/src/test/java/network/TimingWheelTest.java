@@ -0,0 +1,71 @@
+package network;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+
+    private static final long TICK = 100;
+
+    @Test
+    void firesEntriesOnlyWhenTheirTickIsReached() {
+        TimingWheel<String> wheel = new TimingWheel<>(8, TICK, 0);
+        wheel.schedule("a", 250);
+        wheel.schedule("b", 500);
+        List<String> due = new ArrayList<>();
+
+        wheel.advance(199, due::add);
+        assertTrue(due.isEmpty());
+        wheel.advance(299, due::add);
+        assertEquals(List.of("a"), due);
+        wheel.advance(599, due::add);
+        assertEquals(List.of("a", "b"), due);
+    }
+
+    @Test
+    void keepsEntriesFromLaterRotationsInTheirSlot() {
+        TimingWheel<String> wheel = new TimingWheel<>(4, TICK, 0);
+        // 4 slots de 100 ms: 1000 ms cai no mesmo slot que 200 ms, duas voltas depois
+        wheel.schedule("longe", 1000);
+        List<String> due = new ArrayList<>();
+
+        wheel.advance(300, due::add);
+        wheel.advance(700, due::add);
+        assertTrue(due.isEmpty());
+        wheel.advance(1000, due::add);
+        assertEquals(List.of("longe"), due);
+    }
+
+    @Test
+    void pastDeadlinesFireOnTheNextTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(8, TICK, 1000);
+        wheel.schedule("atrasado", 500);
+        List<String> due = new ArrayList<>();
+
+        wheel.advance(1000, due::add);
+        assertTrue(due.isEmpty());
+        wheel.advance(1100, due::add);
+        assertEquals(List.of("atrasado"), due);
+    }
+
+    @Test
+    void callbackCanReschedule() {
+        TimingWheel<String> wheel = new TimingWheel<>(8, TICK, 0);
+        wheel.schedule("x", 100);
+        List<Long> fired = new ArrayList<>();
+        long[] now = {100};
+
+        for (; now[0] <= 500; now[0] += TICK) {
+            wheel.advance(now[0], item -> {
+                fired.add(now[0]);
+                wheel.schedule(item, now[0] + 200);
+            });
+        }
+        assertEquals(List.of(100L, 300L, 500L), fired);
+    }
+}
@@ -0,0 +1,85 @@
+package search;
+
+import model.Movie;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MovieSearchIndexTest {
+
+    private static Movie movie(int id, String titulo, String diretor, String sinopse) {
+        Movie movie = new Movie();
+        movie.setId(id);
+        movie.setTitulo(titulo);
+        movie.setDiretor(diretor);
+        movie.setSinopse(sinopse);
+        return movie;
+    }
+
+    private static MovieSearchIndex sampleIndex() {
+        MovieSearchIndex index = new MovieSearchIndex();
+        index.index(movie(1, "Matrix", "Lana Wachowski", "Um hacker descobre a verdade sobre a realidade."));
+        index.index(movie(2, "Cidade de Deus", "Fernando Meirelles", "A vida no Rio de Janeiro entre o crime e a fotografia."));
+        index.index(movie(3, "Ação Total", "Diretor Qualquer", "Um filme sobre a matrix de uma empresa."));
+        index.index(movie(4, "Central do Brasil", "Walter Salles", "Uma viagem pelo sertão."));
+        return index;
+    }
+
+    private static List<Integer> ids(MovieSearchIndex.Result result) {
+        return result.hits().stream().map(MovieSearchIndex.Hit::movieId).toList();
+    }
+
+    @Test
+    void titleMatchRanksAboveSynopsisMatch() {
+        MovieSearchIndex.Result result = sampleIndex().search("matrix", 10);
+        assertEquals(List.of(1, 3), ids(result));
+        assertEquals(2, result.totalMatches());
+        assertTrue(result.hits().get(0).score() > result.hits().get(1).score());
+    }
+
+    @Test
+    void ignoresAccentsAndCase() {
+        assertEquals(List.of(3), ids(sampleIndex().search("ACAO", 10)));
+        assertEquals(List.of(4), ids(sampleIndex().search("sertao", 10)));
+    }
+
+    @Test
+    void lastTermMatchesAsPrefix() {
+        assertEquals(List.of(1, 3), ids(sampleIndex().search("matr", 10)));
+        assertEquals(List.of(2), ids(sampleIndex().search("cidade mei", 10)));
+    }
+
+    @Test
+    void shortOrEarlierTermsDoNotMatchAsPrefix() {
+        assertTrue(sampleIndex().search("ma", 10).hits().isEmpty());
+        assertTrue(sampleIndex().search("matr cidade", 10).hits().stream().noneMatch(hit -> hit.movieId() == 1));
+    }
+
+    @Test
+    void stopwordsAloneFindNothing() {
+        MovieSearchIndex.Result result = sampleIndex().search("de uma a", 10);
+        assertTrue(result.hits().isEmpty());
+        assertEquals(0, result.totalMatches());
+    }
+
+    @Test
+    void limitKeepsTheBestHitsButCountsAll() {
+        MovieSearchIndex.Result result = sampleIndex().search("matrix", 1);
+        assertEquals(List.of(1), ids(result));
+        assertEquals(2, result.totalMatches());
+    }
+
+    @Test
+    void reindexReplacesAndRemoveDrops() {
+        MovieSearchIndex index = sampleIndex();
+        index.index(movie(1, "Outro Título", "Lana Wachowski", "Nada a ver."));
+        assertEquals(List.of(3), ids(index.search("matrix", 10)));
+
+        index.remove(3);
+        assertTrue(index.search("matrix", 10).hits().isEmpty());
+        assertEquals(3, index.size());
+    }
+}